@@ -1,221 +1,135 @@
 package io.github.fianco;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class AlphaBetaBot extends Bot {
+    private static final int MAX_QUIESCENCE_PLIES = 32; // a side cannot capture more than 14 times
+
     private int depthLimit; // Depth limit for alpha-beta pruning
-    private boolean blackWins = false;
-    private boolean whiteWins = false;
+    private MoveList[] moveLists;
+    private final MoveList[] quiescenceLists = MoveList.forPlies(MAX_QUIESCENCE_PLIES);
+    private PrincipalVariation pv;
 
     public AlphaBetaBot(boolean isBlack, int[][] board, int depthLimit) {
         super(isBlack, board);
         this.depthLimit = depthLimit; // Set the maximum depth for the search
     }
 
-    // Main method for the bot to make its move
-    public void calculate(BoardScreen boardScreen, int[][] board) {
-        Move bestMove = alphaBeta(boardScreen, board, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE, true);
-
-        if (bestMove != null) {
-            // Execute the move
-            if (bestMove.isAttackMove) {
-                boardScreen.botAttackStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            } else {
-                boardScreen.botMoveStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            }
-            System.out.println(bestMove.evaluation);
+    // Main method for the bot to pick its move
+    public Move findMove(int[][] board) {
+        this.board = board;
+        moveLists = MoveList.forPlies(depthLimit + 1);
+        pv = new PrincipalVariation(depthLimit);
+        int evaluation = alphaBeta(board, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE, true);
+        if (pv.isEmpty()) {
+            return null; // The game is already over for this position
         }
+        System.out.println(evaluation);
+        return pv.toMove(evaluation);
     }
-    // Alpha-Beta pruning algorithm to find the best move
-    private Move alphaBeta(BoardScreen boardScreen, int[][] board, int depth, int alpha, int beta, boolean maximizingPlayer) {
-        if (depth == 0 || isGameOver(board)) {
-            int evaluation;
-            if((whiteWins && !isBlack) || (blackWins && isBlack)){
-                evaluation = 10000;
-            } else if((whiteWins && isBlack) || (blackWins && !isBlack)){
-                evaluation = -10000;
-            }else{
-                evaluation = evaluateBoard(board); // Evaluate the board at the leaf node
-            }
-            whiteWins=false;
-            blackWins=false;
-            return new Move(-1,-1,-1,-1,false,evaluation); // Return the evaluation wrapped in a Move object
+    // Alpha-Beta pruning algorithm, returns the evaluation and leaves the best line in pv
+    private int alphaBeta(int[][] board, int depth, int alpha, int beta, boolean maximizingPlayer) {
+        int ply = depthLimit - depth;
+        pv.clear(ply);
+        int winner = FiancoRules.getWinner(board, maximizingPlayer == isBlack);
+        if (winner != FiancoRules.EMPTY) {
+            return gameOverScore(winner);
         }
-
-        List<Move> moves = getAllPossibleMoves(boardScreen, maximizingPlayer);
-        // Sort the list by isAttackMove first (true before false)
-        moves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
-        if(moves.get(0).isAttackMove){
-            // remove all the moves with isAttackMove false
-            moves.removeIf(move -> !move.isAttackMove);
+        if (depth == 0) {
+            return quiescence(board, alpha, beta, maximizingPlayer, 0);
         }
-        Move bestMove = null;
+
+        // Captures are mandatory, so the rules only hand out attack moves when there is one
+        MoveList moves = moveLists[depth];
+        FiancoRules.generateMoves(board, maximizingPlayer == isBlack, moves);
 
         if (maximizingPlayer) {
             int maxEval = Integer.MIN_VALUE;
 
-            for (Move move : moves) {
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
                 // Simulate the move
-                makeMove(board, move, isBlack);
-                Move resultMove = alphaBeta(boardScreen, board, depth - 1, alpha, beta, false);
+                FiancoRules.makeMove(board, move);
+                int evaluation = alphaBeta(board, depth - 1, alpha, beta, false);
 
-                if (resultMove.evaluation > maxEval) {
-                    maxEval = resultMove.evaluation;
-                    bestMove = move;
-                    bestMove.evaluation = maxEval;
+                if (evaluation > maxEval) {
+                    maxEval = evaluation;
+                    pv.update(ply, move);
                 }
 
                 // Undo the move
-                undoMove(board, move, isBlack);
+                FiancoRules.undoMove(board, move);
 
-                alpha = Math.max(alpha, resultMove.evaluation);
+                alpha = Math.max(alpha, evaluation);
                 if (beta <= alpha) {
                     break; // Beta cut-off
                 }
             }
+            return maxEval;
 
         } else {
             int minEval = Integer.MAX_VALUE;
 
-            for (Move move : moves) {
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
                 // Simulate the move
-                makeMove(board, move, !isBlack);
-                Move resultMove = alphaBeta(boardScreen, board, depth - 1, alpha, beta, true);
+                FiancoRules.makeMove(board, move);
+                int evaluation = alphaBeta(board, depth - 1, alpha, beta, true);
 
-                if (resultMove.evaluation < minEval) {
-                    minEval = resultMove.evaluation;
-                    bestMove = move;
-                    bestMove.evaluation = minEval;
+                if (evaluation < minEval) {
+                    minEval = evaluation;
+                    pv.update(ply, move);
                 }
 
                 // Undo the move
-                undoMove(board, move, !isBlack);
+                FiancoRules.undoMove(board, move);
 
-                beta = Math.min(beta, resultMove.evaluation);
+                beta = Math.min(beta, evaluation);
                 if (beta <= alpha) {
                     break; // Alpha cut-off
                 }
             }
+            return minEval;
         }
-
-        return bestMove;
-    }
-    public List<Move> getAllPossibleMoves(BoardScreen boardScreen, boolean maximization){
-        List<Move> moves = new ArrayList<>();
-        if(maximization){ // Bot moves
-            // Generate in order to start with moves that are closer to the first row
-            if(isBlack){
-                for (int row = 0; row < boardScreen.gridSize; row++) {
-                    for (int col = 0; col < boardScreen.gridSize; col++) {
-                        // Get all valid moves for this piece
-                        if (isBotPiece(row, col)) {
-                            List<Move> pieceMoves = getValidMovesForPiece(boardScreen, row, col, isBlack);
-                            moves.addAll(pieceMoves); // Add to the list of moves
-                        }
-                    }
-                }
-            }else{ // Generate in order to start with moves that are closer to the last row
-                for (int row = 8; row >= 0; row--) {
-                    for (int col = 0; col < boardScreen.gridSize; col++) {
-                        // Get all valid moves for this piece
-                        if (isBotPiece(row, col)) {
-                            List<Move> pieceMoves = getValidMovesForPiece(boardScreen, row, col, isBlack);
-                            moves.addAll(pieceMoves); // Add to the list of moves
-                        }
-                    }
-                }
-            }
-        }else{ // Opponent moves
-            if(!isBlack){
-                for (int row = 0; row < boardScreen.gridSize; row++) {
-                    for (int col = 0; col < boardScreen.gridSize; col++) {
-                        // Get all valid moves for this piece
-                        if (isOpponentPiece(row, col)){
-                            List<Move> pieceMoves = getValidMovesForPiece(boardScreen, row, col, !isBlack);
-                            moves.addAll(pieceMoves); // Add to the list of moves
-                        }
-                    }
-                }
-            }else{
-                for (int row = 8; row >= 0; row--) {
-                    for (int col = 0; col < boardScreen.gridSize; col++) {
-                        // Get all valid moves for this piece
-                        if (isOpponentPiece(row, col)) {
-                            List<Move> pieceMoves = getValidMovesForPiece(boardScreen, row, col, !isBlack);
-                            moves.addAll(pieceMoves); // Add to the list of moves
-                        }
-                    }
-                }
-            }
-        }
-
-        return moves;
     }
-    private List<Move> getValidMovesForPiece(BoardScreen boardScreen, int row, int col, boolean playAsBlack) {
-        List<Move> validMoves = new ArrayList<>();
-
-        // Try moving in all four directions (forward for white,backward for black, left and right) if allowed
-        if(playAsBlack && row>0)
-            addMoveIfValid(boardScreen, validMoves, row, col, row - 1, col); // Down
-        if(!playAsBlack && row<8)
-            addMoveIfValid(boardScreen, validMoves, row, col, row + 1, col); // Forward
-        if(col>0)
-            addMoveIfValid(boardScreen, validMoves, row, col, row, col - 1); // Left
-        if(col<8)
-            addMoveIfValid(boardScreen, validMoves, row, col, row, col + 1); // Right
 
-        // Check for attack moves
-        AddAttackToList(boardScreen.checkForCapturesSpec(board,!playAsBlack,row,col),validMoves);
-
-        return validMoves;
-    }
-    private void addMoveIfValid(BoardScreen boardScreen, List<Move> validMoves, int startRow, int startCol, int endRow, int endCol) {
-        if (board[endRow][endCol] == 0) {
-            validMoves.add(new Move(startRow, startCol, endRow, endCol, false, 0));
+    /**
+     * Extends a leaf while the side to move has a capture. Captures are mandatory, so such a position
+     * cannot be evaluated as it stands (no stand pat) and only the captures are searched. A position
+     * without a capture is evaluated.
+     */
+    private int quiescence(int[][] board, int alpha, int beta, boolean maximizingPlayer, int qply) {
+        int winner = FiancoRules.getWinner(board, maximizingPlayer == isBlack);
+        if (winner != FiancoRules.EMPTY) {
+            return gameOverScore(winner);
         }
-    }
-    private void AddAttackToList(List<Move> attacks, List<Move> validMoves) {
-        for(Move attack : attacks){
-            validMoves.add(new Move(attack.startRow, attack.startCol, attack.endRow, attack.endCol, true, 0));
+        MoveList moves = quiescenceLists[qply];
+        FiancoRules.generateMoves(board, maximizingPlayer == isBlack, moves);
+        if (!Move.isAttack(moves.get(0)) || qply + 1 == MAX_QUIESCENCE_PLIES) {
+            return evaluateBoard(board); // quiet, stand pat
         }
-    }
-    public void makeMove(int[][] board, Move move, boolean isBlack){
-        if(move.isAttackMove()){
-            if(isBlack){
-                if(move.endCol>move.startCol)// Black attack to the right
-                    board[move.startRow-1][move.startCol+1] = 0;
-                else // Black attack to the left
-                    board[move.startRow-1][move.startCol-1] = 0;
-            }else{
-                if(move.endCol>move.startCol)// White attack to the right
-                    board[move.startRow+1][move.startCol+1] = 0;
-                else // White attack to the left
-                    board[move.startRow+1][move.startCol-1] = 0;
-            }
 
-        }
-        board[move.endRow][move.endCol] = board[move.startRow][move.startCol];
-        board[move.startRow][move.startCol] = 0;
-    }
-    public void undoMove(int[][] board, Move move, boolean isBlack){
-        if(move.isAttackMove()){
-            if(isBlack){
-                if(move.endCol>move.startCol)// Black attacked to the right
-                    board[move.startRow-1][move.startCol+1] = 1;
-                else // Black attacked to the left
-                    board[move.startRow-1][move.startCol-1] = 1;
-            }else{
-                if(move.endCol>move.startCol)// White attacked to the right
-                    board[move.startRow+1][move.startCol+1] = 2;
-                else // White attacked to the left
-                    board[move.startRow+1][move.startCol-1] = 2;
-            }
+        int best = maximizingPlayer ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            FiancoRules.makeMove(board, move);
+            int evaluation = quiescence(board, alpha, beta, !maximizingPlayer, qply + 1);
+            FiancoRules.undoMove(board, move);
 
+            if (maximizingPlayer) {
+                best = Math.max(best, evaluation);
+                alpha = Math.max(alpha, evaluation);
+            } else {
+                best = Math.min(best, evaluation);
+                beta = Math.min(beta, evaluation);
+            }
+            if (beta <= alpha) {
+                break;
+            }
         }
-        board[move.startRow][move.startCol] = board[move.endRow][move.endCol];
-        board[move.endRow][move.endCol] = 0;
+        return best;
+    }
 
+    private int gameOverScore(int winner) {
+        return (winner == FiancoRules.BLACK) == isBlack ? 10000 : -10000;
     }
 
     // Method to evaluate the board: positive for bot, negative for opponent
@@ -248,48 +162,6 @@ public class AlphaBetaBot extends Bot {
     private boolean isOpponentPiece(int row, int col) {
         return (!isBlack && board[row][col] == 2) || (isBlack && board[row][col] == 1);
     }
-    // Method to check if the game is over
-    private boolean isGameOver(int[][] board) {
-        this.board = board;
-
-        // Check if a black stone has reached row 0 (top)
-        for (int i = 0; i < board[0].length; i++) {
-            if (board[0][i] == 2) {
-                blackWins = true;
-                return true;
-            }
-        }
-
-        // Check if a white stone has reached row 8 (bottom)
-        for (int i = 0; i < board[8].length; i++) {
-            if (board[8][i] == 1) {
-                whiteWins = true;
-                return true;
-            }
-        }
-
-        // Check if still are any white or black stones
-        int countW = 0;
-        int countB = 0;
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board.length; j++) {
-                if (board[i][j] == 1)
-                    countW++;
-                else if(board[i][j] == 2)
-                    countB++;
-                else if(countW!=0 && countB!=0)
-                    break;
-            }
-        }
-        if(countW==0){
-            blackWins = true;
-            return true;
-        } else if (countB==0) {
-            whiteWins = true;
-            return true;
-        }
-        return false;
-    }
     public void changeSide(){
         isBlack = !isBlack;
     }
@@ -1,166 +1,127 @@
 package io.github.fianco;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class AlphaBetaBotTT extends Bot {
     private int depthLimit; // Depth limit for alpha-beta pruning
     private ZobristTransposition zobristTransposition; // Instance of ZobristTransposition
-    private int flag = 0;
+    private MoveList[] moveLists;
+    private PrincipalVariation pv;
 
     public AlphaBetaBotTT(boolean isBlack, int[][] board, int depthLimit) {
         super(isBlack, board);
         this.depthLimit = depthLimit; // Set the maximum depth for the search
         this.zobristTransposition = new ZobristTransposition(); // Initialize ZobristTransposition
-        this.zobristTransposition.resetTranspositionTable();
         this.zobristTransposition.computeZobristHash(board); // Compute initial Zobrist hash for the current board
     }
 
-    // Main method for the bot to make its move
-    public void calculate(BoardScreen boardScreen, int[][] board) {
+    // Main method for the bot to pick its move
+    public Move findMove(int[][] board) {
         this.zobristTransposition.computeZobristHash(board);
         BotLogic botLogic = new BotLogic(isBlack);
+        moveLists = MoveList.forPlies(depthLimit + 1);
+        pv = new PrincipalVariation(depthLimit);
+        FiancoPosition pos = new FiancoPosition(board);
         Move bestMove = null;
-        List<Move> moves = botLogic.getAllPossibleMoves(board, boardScreen, true);
-        moves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
+        List<Move> moves = botLogic.getAllPossibleMoves(pos, true); // captures are already forced
 
         if(moves.size() == 1){
             bestMove = moves.get(0);
+        }else if(!moves.isEmpty()){
+            openTranspositionTable(tableFile()); // kept from earlier moves and games
+            bestMove = pv.toMove(alphaBeta(pos, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE, true, botLogic));
         }
-        else if (moves.get(0).isAttackMove) {
-            moves.removeIf(move -> !move.isAttackMove);
-            if(moves.size()==1){
-                bestMove = moves.get(0);
-            }else{
-                loadTranspositionTable("transposition_table.ser");
-                bestMove = alphaBeta(boardScreen, board, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE, true, botLogic);
-            }
-        }else{
-            loadTranspositionTable("transposition_table.ser");
-            bestMove = alphaBeta(boardScreen, board, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE, true, botLogic);
-        }
-        System.out.println("best move " + bestMove.startRow + " " + bestMove.startCol + " to " + bestMove.endRow + " " + bestMove.endCol + " " + bestMove.evaluation);
-
 
         if (bestMove != null) {
-            // Execute the move
-            if (bestMove.isAttackMove) {
-                boardScreen.botAttackStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            } else {
-                boardScreen.botMoveStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            }
-            System.out.println(bestMove.evaluation);
+            System.out.println("best move " + bestMove.startRow + " " + bestMove.startCol + " to " + bestMove.endRow + " " + bestMove.endCol + " " + bestMove.evaluation + " pv " + pv);
         }
-        saveTranspositionTable("transposition_table.ser");
+        return bestMove;
     }
-    // Alpha-Beta pruning algorithm to find the best move
-    private Move alphaBeta(BoardScreen boardScreen, int[][] board, int depth, int alpha, int beta, boolean maximizingPlayer, BotLogic botLogic) {
-        if (zobristTransposition.isInTranspositionTable()) { // && zobristTransposition.getEntryFromTranspositionTable().getDepth() >= depth
-            //System.out.println("this is the depth " + depth);
-            TranspositionEntry entry = zobristTransposition.getEntryFromTranspositionTable();
-            //System.out.println("this is evaluation " + entry.getEvaluation());
-            return new Move(entry.getStartRow(), entry.getStartCol(), entry.getEndRow(), entry.getEndCol(), entry.isAttack(), entry.getEvaluation());
+    // Alpha-Beta pruning algorithm, returns the evaluation and leaves the best line in pv.
+    // Entries are stored for the node itself with a bound, scores are from the bot's point of view.
+    private int alphaBeta(FiancoPosition pos, int depth, int alpha, int beta, boolean maximizingPlayer, BotLogic botLogic) {
+        int ply = depthLimit - depth;
+        pv.clear(ply);
+        long entry = zobristTransposition.probe(zobristTransposition.getZobristHash());
+        if (entry != TranspositionTable.MISS && TranspositionTable.depth(entry) >= depth) {
+            int evaluation = TranspositionTable.score(entry);
+            int bound = TranspositionTable.bound(entry);
+            int move = TranspositionTable.move(entry);
+            // The root has to give back a move that can be played
+            if ((bound == TranspositionTable.EXACT
+                || (bound == TranspositionTable.LOWER_BOUND && evaluation >= beta)
+                || (bound == TranspositionTable.UPPER_BOUND && evaluation <= alpha))
+                && (ply > 0 || pos.isLegal(move, isBlack))) {
+                pv.set(ply, move);
+                return evaluation;
+            }
         }
 
-        if (depth == 0 || botLogic.isGameOver(board,boardScreen,maximizingPlayer?1:-1)) {
+        if (depth == 0 || botLogic.isGameOver(pos, maximizingPlayer?1:-1)) {
             int evaluation;
             if((botLogic.didWhiteWin() && !isBlack) || (botLogic.didBlackWin() && isBlack)){
                 evaluation = 10000;
             } else if((botLogic.didWhiteWin() && isBlack) || (botLogic.didBlackWin() && !isBlack)){
                 evaluation = -10000;
             }else{
-                evaluation = botLogic.evaluateBoard(board); // Evaluate the board at the leaf node
+                evaluation = botLogic.evaluateBoard(pos); // Evaluate the board at the leaf node
             }
             botLogic.setWinsToFalse();
-            return new Move(-1,-1,-1,-1,false,evaluation); // Return the evaluation wrapped in a Move object
-        }
-
-        List<Move> moves = botLogic.getAllPossibleMoves(board, boardScreen, maximizingPlayer);
-        // Sort the list by isAttackMove first (true before false)
-        moves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
-        if(moves.get(0).isAttackMove){
-            // remove all the moves with isAttackMove false
-            moves.removeIf(move -> !move.isAttackMove);
+            return evaluation;
         }
-        Move bestMove = null;
-
-        if (maximizingPlayer) {
-            int maxEval = Integer.MIN_VALUE;
-
-            for (Move move : moves) {
-                // Simulate the move
-                botLogic.makeMove(board, move, isBlack);
-                if(move.isAttackMove)
-                    zobristTransposition.updateZobristHashForAttack(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
-                else
-                    zobristTransposition.updateZobristHash(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
-
-                Move resultMove = alphaBeta(boardScreen, board, depth - 1, alpha, beta, false, botLogic);
-                zobristTransposition.storeEntryInTranspositionTable(resultMove.evaluation, move.isAttackMove, move.startRow, move.startCol, move.endRow, move.endCol, depth, flag);
-                if (resultMove.evaluation > maxEval) {
-                    maxEval = resultMove.evaluation;
-                    bestMove = move;
-                    bestMove.evaluation = maxEval;
-                }
 
-                // Undo the move
-                botLogic.undoMove(board, move, isBlack);
-                if(move.isAttackMove)
-                    zobristTransposition.updateZobristHashForAttack(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
-                else
-                    zobristTransposition.updateZobristHash(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
-
-                alpha = Math.max(alpha, resultMove.evaluation);
-                if (beta <= alpha) {
-                    flag = 1; // Fail-high result implies a lower bound
-                    break; // Beta cut-off
-                }
+        MoveList moves = moveLists[depth];
+        botLogic.getAllPossibleMoves(pos, maximizingPlayer, moves); // captures are already forced
+
+        int alphaOrig = alpha;
+        int betaOrig = beta;
+        int bestEval = maximizingPlayer ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        int bestMove = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int startRow = Move.from(move) / 9, startCol = Move.from(move) % 9;
+            int endRow = Move.to(move) / 9, endCol = Move.to(move) % 9;
+            // Simulate the move
+            botLogic.makeMove(pos, move);
+            long parentHash = zobristTransposition.getZobristHash();
+            if(Move.isAttack(move))
+                zobristTransposition.updateZobristHashForAttack(startRow, startCol, endRow, endCol,pos.pieceAt(endRow, endCol));
+            else
+                zobristTransposition.updateZobristHash(startRow, startCol, endRow, endCol,pos.pieceAt(endRow, endCol));
+
+            int evaluation = alphaBeta(pos, depth - 1, alpha, beta, !maximizingPlayer, botLogic);
+
+            // Undo the move
+            botLogic.undoMove(pos, move);
+            zobristTransposition.setZobristHash(parentHash);
+
+            if (maximizingPlayer ? evaluation > bestEval : evaluation < bestEval) {
+                bestEval = evaluation;
+                bestMove = move;
+                pv.update(ply, move);
             }
-
-        } else {
-            int minEval = Integer.MAX_VALUE;
-
-            for (Move move : moves) {
-                // Simulate the move
-                botLogic.makeMove(board, move, !isBlack);
-                if(move.isAttackMove)
-                    zobristTransposition.updateZobristHashForAttack(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
-                else
-                    zobristTransposition.updateZobristHash(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
-
-                Move resultMove = alphaBeta(boardScreen, board, depth - 1, alpha, beta, true, botLogic);
-                zobristTransposition.storeEntryInTranspositionTable(resultMove.evaluation, move.isAttackMove, move.startRow, move.startCol, move.endRow, move.endCol, depth, flag);
-
-                if (resultMove.evaluation < minEval) {
-                    minEval = resultMove.evaluation;
-                    bestMove = move;
-                    bestMove.evaluation = minEval;
-                }
-
-                // Undo the move
-                botLogic.undoMove(board, move, !isBlack);
-                if(move.isAttackMove)
-                    zobristTransposition.updateZobristHashForAttack(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
-                else
-                    zobristTransposition.updateZobristHash(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
-
-                beta = Math.min(beta, resultMove.evaluation);
-                if (beta <= alpha) {
-                    flag = 2; // Fail-low result implies an upper bound
-                    break; // Alpha cut-off
-                }
+            if (maximizingPlayer) {
+                alpha = Math.max(alpha, evaluation);
+            } else {
+                beta = Math.min(beta, evaluation);
+            }
+            if (beta <= alpha) {
+                break; // Beta cut-off at a max node, alpha cut-off at a min node
             }
         }
-        flag = 0;
-        return bestMove;
-    }
-    public void saveTranspositionTable(String filename) {
-        zobristTransposition.saveTranspositionTable(filename);
+
+        int flag = bestEval <= alphaOrig ? TranspositionTable.UPPER_BOUND
+            : bestEval >= betaOrig ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+        zobristTransposition.store(zobristTransposition.getZobristHash(), bestEval, bestMove, depth, flag);
+        return bestEval;
     }
 
-    // Load the transposition table from a file
-    public void loadTranspositionTable(String filename) {
-        zobristTransposition.loadTranspositionTable(filename);
+    // Map the transposition table file, one per bot and color since the evaluation depends on both
+    public void openTranspositionTable(String filename) {
+        zobristTransposition.openTranspositionTable(filename);
+    }
+    private String tableFile() {
+        return "transposition_table_" + getClass().getSimpleName() + (isBlack ? "_black.tt" : "_white.tt");
     }
     public void changeSide(){
         isBlack = !isBlack;
@@ -0,0 +1,32 @@
+package io.github.fianco;
+
+import java.util.Arrays;
+
+/**
+ * The moves each side played in one MCTS iteration, for the all-moves-as-first (RAVE) statistics.
+ * A move is marked with the number of the iteration instead of a flag, so starting the next
+ * iteration clears the set without touching the arrays. Not thread safe, one per search thread.
+ */
+public class AmafMoves {
+    private static final int KEYS = 1 << 14; // from and to of a packed move, the attack flag is left out
+
+    private final int[] white = new int[KEYS];
+    private final int[] black = new int[KEYS];
+    private int stamp = 1;
+
+    public void clear() {
+        if (++stamp == 0) { // wrapped around, old marks could match again
+            Arrays.fill(white, 0);
+            Arrays.fill(black, 0);
+            stamp = 1;
+        }
+    }
+
+    public void add(boolean blackSide, int move) {
+        (blackSide ? black : white)[move & (KEYS - 1)] = stamp;
+    }
+
+    public boolean contains(boolean blackSide, int move) {
+        return (blackSide ? black : white)[move & (KEYS - 1)] == stamp;
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.fianco;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+/**
+ * Evaluates many small independent leaves (simulations, playouts) on a pool of daemon workers without
+ * a future per leaf. Leaves go into a lock-free queue in chunks of BATCH, a worker takes a whole chunk
+ * at a time and adds its results to the total of the chunk's Batch. The caller waits once for the
+ * whole batch and helps with the queue meanwhile, so the synchronization is paid per chunk and not
+ * per leaf. If a leaf throws, the rest of its batch is skipped and await rethrows the exception.
+ */
+public class BatchEvaluator {
+    private static final int BATCH = 16; // leaves a worker takes from the queue at once
+
+    // Leaves whose results are summed, wait for them with await
+    public static class Batch {
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>(); // the first one
+        private volatile Thread waiter;
+    }
+
+    private static class Chunk {
+        final Batch batch;
+        final IntSupplier leaf;
+        final int count;
+
+        Chunk(Batch batch, IntSupplier leaf, int count) {
+            this.batch = batch;
+            this.leaf = leaf;
+            this.count = count;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Chunk> queue = new ConcurrentLinkedQueue<>();
+    private final Thread[] workers;
+
+    public BatchEvaluator(int threads, String name) {
+        this.workers = new Thread[Math.max(1, threads)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(this::work, name + " worker " + i);
+            workers[i].setDaemon(true); // do not keep the application alive
+            workers[i].start();
+        }
+    }
+
+    // Queues count evaluations of the leaf for the batch
+    public void submit(Batch batch, IntSupplier leaf, int count) {
+        batch.pending.addAndGet(count);
+        for (int n = 0; n < count; n += BATCH) {
+            queue.add(new Chunk(batch, leaf, Math.min(BATCH, count - n)));
+        }
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    // Waits until every leaf of the batch is evaluated and returns the sum of the results, throws the
+    // first exception a leaf threw instead
+    public long await(Batch batch) {
+        batch.waiter = Thread.currentThread();
+        while (batch.pending.get() > 0) {
+            Chunk chunk = queue.poll();
+            if (chunk != null) {
+                run(chunk);
+            } else {
+                LockSupport.park(this); // the worker that finishes the last leaf wakes us up
+            }
+        }
+        batch.waiter = null;
+        RuntimeException failure = batch.failure.get();
+        if (failure != null) {
+            throw failure;
+        }
+        return batch.total.get();
+    }
+
+    private void work() {
+        while (true) {
+            Chunk chunk = queue.poll();
+            if (chunk != null) {
+                run(chunk);
+            } else {
+                LockSupport.park(this); // submit wakes us up
+            }
+        }
+    }
+
+    private void run(Chunk chunk) {
+        Batch batch = chunk.batch;
+        long sum = 0;
+        try {
+            for (int i = 0; i < chunk.count && batch.failure.get() == null; i++) {
+                sum += chunk.leaf.getAsInt();
+            }
+        } catch (RuntimeException e) {
+            batch.failure.compareAndSet(null, e); // the chunk is still counted down so the batch finishes
+        }
+        batch.total.addAndGet(sum);
+        if (batch.pending.addAndGet(-chunk.count) == 0) {
+            Thread waiter = batch.waiter;
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+}
@@ -152,18 +152,7 @@ public class BoardScreen extends InputAdapter implements Screen {
     }
 
     protected void setInitialStonePositions() {
-        // Set white stones in the first row
-        for (int col = 0; col < gridSize; col++) {
-            board[0][col] = 1; // 1 = white stone
-        }
-        board[1][1]=1;board[1][7]=1;board[2][2]=1;board[2][6]=1;board[3][3]=1;board[3][5]=1;
-
-        // Set black stones in the last row
-        for (int col = 0; col < gridSize; col++) {
-            board[8][col] = 2; // 2 = black stone
-        }
-        board[7][1]=2;board[7][7]=2;board[6][2]=2;board[6][6]=2;board[5][3]=2;board[5][5]=2;
-
+        FiancoRules.setInitialStonePositions(board);
     }
     @Override
     public void show() {
@@ -505,57 +494,8 @@ public class BoardScreen extends InputAdapter implements Screen {
 
     }
     protected List<Move> checkForCapturesSpec(int [][]board, boolean player1, int row, int col) {
-        //When a player is on the wall the other player needs to attack is a bug
-
-        int playerStone = player1 ? 1 : 2; // 1 for white, 2 for black
-        int opponentStone = player1 ? 2 : 1; // Opponent's stone
-        List<Move> getAttackMoves = new ArrayList<>();
-
-        // Loop through the board to check for capture possibilities
-        if (board[row][col] == playerStone) {
-            // Check diagonally left and right for opponent stones
-
-            // Check diagonally left
-            if (playerStone == 1) { // White moves upwards
-                // Check diagonally left
-                if (col>1 && row < 7 && board[row + 1][col - 1] == opponentStone) {
-                    // Check if there's an empty space behind the opponent (for white moving up)
-                    if (board[row + 2][col - 2] == 0) {
-                        getAttackMoves.add(new Move(row, col, row+2, col-2, true));
-
-                    }
-                }
-                // Check diagonally right
-                if (col < board[row].length - 2 && row < 7 && board[row + 1][col + 1] == opponentStone) {
-                    // Check if there's an empty space behind the opponent (for white moving up)
-                    if (board[row + 2][col + 2] == 0) {
-                        getAttackMoves.add(new Move(row, col, row+2, col+2, true));
-                    }
-                }
-            }
-
-
-            // Similar logic for black moving down (opposite direction)
-            if (playerStone == 2) { // Black moves downwards
-                // Check diagonally left
-                if (col > 1 && row > 1 && board[row - 1][col - 1] == opponentStone) {
-                    // Check if there's an empty space behind the opponent (for black moving down)
-                    if (board[row - 2][col - 2] == 0) {
-                        getAttackMoves.add(new Move(row, col, row-2, col-2, true));
-                    }
-                }
-
-                // Check diagonally right
-                if (col < board[col].length - 2 && row > 1 && board[row - 1][col + 1] == opponentStone) {
-                    // Check if there's an empty space behind the opponent (for black moving down)
-                    if (board[row - 2][col + 2] == 0) {
-                        getAttackMoves.add(new Move(row, col, row-2, col+2, true));
-                    }
-                }
-            }
-        }
-        return getAttackMoves;
-
+        // player1 plays white
+        return FiancoRules.getCaptures(board, !player1, row, col);
     }
     // Capture the opponent's stone
     private boolean AttackStone(int row, int col){
@@ -31,10 +31,29 @@ public abstract class Bot {
 
     /**
      * @param boardScreen
-     * To be implemented by the class who extends this one affects the field in some way.
+     * Plays the move chosen by findMove on the screen, or reports that the bot is stuck.
      */
 
-    public void calculate(BoardScreen boardScreen, int[][] board) {}
+    public void calculate(BoardScreen boardScreen, int[][] board) {
+        Move move = findMove(board);
+        if (move == null) {
+            boardScreen.cantMove(isBlack);
+        } else if (move.isAttackMove) {
+            boardScreen.botAttackStone(move.startRow, move.startCol, move.endRow, move.endCol);
+        } else {
+            boardScreen.botMoveStone(move.startRow, move.startCol, move.endRow, move.endCol);
+        }
+    }
+
+    /**
+     * @param board
+     * To be implemented by the class who extends this one. Searches the position without any UI,
+     * so it can run on worker threads, in batch jobs and in benchmarks.
+     * @return the chosen move, or null if the bot has no legal move
+     */
+    public Move findMove(int[][] board) {
+        return null;
+    }
 
 
     /**
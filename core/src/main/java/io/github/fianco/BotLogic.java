@@ -92,6 +92,73 @@ public class BotLogic {
         }
         return score;
     }
+    // Same evaluation as evaluateBoard(int[][]) computed on the bitboards. Material, distance and columns
+    // come from the counters FiancoPosition updates in makeMove/undoMove, only danger and freedom look at the stones.
+    protected int evaluateBoard(FiancoPosition pos) {
+        final int pieceValue = 10;
+        final int freedom_moves = 3;
+
+        // Material and distance: white stones are worth 10 + row, black stones 10 + (7 - row)
+        int white = pieceValue * pos.countWhite() + pos.whiteRowSum();
+        int black = (pieceValue + 7) * pos.countBlack() - pos.blackRowSum();
+        int score = isBlack ? black - white : white - black;
+
+        // Column bonus
+        score += isBlack ? pos.blackOnBonusColumns() - pos.whiteOnBonusColumns()
+            : pos.whiteOnBonusColumns() - pos.blackOnBonusColumns();
+
+        score += danger(pos);
+        int freedom = freedom(pos);
+        if (freedom > 0) {
+            score += freedom_moves;
+        } else if (freedom < 0) {
+            score -= freedom_moves;
+        }
+        return score;
+    }
+    // The danger squares follow the bot's point of view for both colors, like isPieceInDanger
+    private int danger(FiancoPosition pos) {
+        final int dangerPenalty = 5;
+        final int captureBonus = 5;
+
+        long wLo = pos.whiteLo, wHi = pos.whiteHi, bLo = pos.blackLo, bHi = pos.blackHi;
+        long eLo = FiancoPosition.LO_MASK & ~(wLo | bLo), eHi = FiancoPosition.HI_MASK & ~(wHi | bHi);
+        long dangerLo, dangerHi;
+        if (isBlack) {
+            dangerLo = (FiancoPosition.upLo(wLo, 10) & FiancoPosition.downLo(eLo, eHi, 10))
+                | (FiancoPosition.upLo(wLo, 8) & FiancoPosition.downLo(eLo, eHi, 8));
+            dangerHi = (FiancoPosition.upHi(wLo, wHi, 10) & FiancoPosition.downHi(eHi, 10))
+                | (FiancoPosition.upHi(wLo, wHi, 8) & FiancoPosition.downHi(eHi, 8));
+        } else {
+            dangerLo = (FiancoPosition.downLo(bLo, bHi, 8) & FiancoPosition.upLo(eLo, 8))
+                | (FiancoPosition.downLo(bLo, bHi, 10) & FiancoPosition.upLo(eLo, 10));
+            dangerHi = (FiancoPosition.downHi(bHi, 8) & FiancoPosition.upHi(eLo, eHi, 8))
+                | (FiancoPosition.downHi(bHi, 10) & FiancoPosition.upHi(eLo, eHi, 10));
+        }
+        dangerLo &= FiancoPosition.INTERIOR_LO;
+        dangerHi &= FiancoPosition.INTERIOR_HI;
+        int whiteDanger = FiancoPosition.count(wLo & dangerLo, wHi & dangerHi);
+        int blackDanger = FiancoPosition.count(bLo & dangerLo, bHi & dangerHi);
+        return isBlack ? captureBonus * whiteDanger - dangerPenalty * blackDanger
+            : captureBonus * blackDanger - dangerPenalty * whiteDanger;
+    }
+    // Freedom of movement: empty squares to the side and in the bot's forward direction,
+    // bot stones minus opponent stones
+    private int freedom(FiancoPosition pos) {
+        long wLo = pos.whiteLo, wHi = pos.whiteHi, bLo = pos.blackLo, bHi = pos.blackHi;
+        long eLo = FiancoPosition.LO_MASK & ~(wLo | bLo), eHi = FiancoPosition.HI_MASK & ~(wHi | bHi);
+        // Stones with an empty square to the right, to the left and in front of them
+        long rightLo = FiancoPosition.downLo(eLo, eHi, 1) & FiancoPosition.NOT_COL8_LO;
+        long rightHi = FiancoPosition.downHi(eHi, 1) & FiancoPosition.NOT_COL8_HI;
+        long leftLo = FiancoPosition.upLo(eLo, 1) & FiancoPosition.NOT_COL0_LO;
+        long leftHi = FiancoPosition.upHi(eLo, eHi, 1) & FiancoPosition.NOT_COL0_HI;
+        long forwardLo = isBlack ? FiancoPosition.upLo(eLo, 9) : FiancoPosition.downLo(eLo, eHi, 9);
+        long forwardHi = isBlack ? FiancoPosition.upHi(eLo, eHi, 9) : FiancoPosition.downHi(eHi, 9);
+        int freedom = FiancoPosition.count(wLo & rightLo, wHi & rightHi) - FiancoPosition.count(bLo & rightLo, bHi & rightHi)
+            + FiancoPosition.count(wLo & leftLo, wHi & leftHi) - FiancoPosition.count(bLo & leftLo, bHi & leftHi)
+            + FiancoPosition.count(wLo & forwardLo, wHi & forwardHi) - FiancoPosition.count(bLo & forwardLo, bHi & forwardHi);
+        return isBlack ? -freedom : freedom;
+    }
     protected int evaluateBoard2(int[][] board) {
         this.board = board;
         int score = 0;
@@ -141,47 +208,14 @@ public class BotLogic {
     }
     public void makeMove(int[][] board, Move move, boolean isBlack){
         this.board = board;
-        if(move.isAttackMove()){
-            if(isBlack){
-                if(move.endCol>move.startCol)// Black attack to the right
-                    board[move.startRow-1][move.startCol+1] = 0;
-                else // Black attack to the left
-                    board[move.startRow-1][move.startCol-1] = 0;
-            }else{
-                if(move.endCol>move.startCol)// White attack to the right
-                    board[move.startRow+1][move.startCol+1] = 0;
-                else // White attack to the left
-                    board[move.startRow+1][move.startCol-1] = 0;
-            }
-
-        }
-        board[move.endRow][move.endCol] = board[move.startRow][move.startCol];
-        board[move.startRow][move.startCol] = 0;
+        FiancoRules.makeMove(board, move);
     }
     public int[][] makeMoveInt(int[][] board, Move move, boolean isBlacky){
-        //System.out.println(move.startRow + " " + move.startCol + " " + move.endRow + " " + move.endCol);
-        int [][] newboard = deepCopyBoard(board);
-        if(move.isAttackMove()){
-            if(isBlacky){
-                if(move.endCol>move.startCol){// Black attack to the right
-                    newboard[move.startRow-1][move.startCol+1] = 0;}
-                else{ // Black attack to the left
-                    newboard[move.startRow-1][move.startCol-1] = 0;}
-            }else{
-                if(move.endCol>move.startCol){// White attack to the right
-                    newboard[move.startRow+1][move.startCol+1] = 0;}
-                else{ // White attack to the left
-                    newboard[move.startRow+1][move.startCol-1] = 0;}
-            }
-
-        }
-        newboard[move.endRow][move.endCol] = newboard[move.startRow][move.startCol];
-        newboard[move.startRow][move.startCol] = 0;
-        return newboard;
+        return FiancoRules.applyMove(board, move);
     }
     public Move getBestMoveUsingEvaluation(int[][] board, MCS.EvaluationFunction evalFunc) {
         // Get all possible moves for the current player (isBlack)
-        List<Move> possibleMoves = getAllPossibleMoves(board, null, isBlack);
+        List<Move> possibleMoves = getAllPossibleMoves(board, true);
 
         // If no moves are possible, return null
         if (possibleMoves.isEmpty()) {
@@ -198,7 +232,7 @@ public class BotLogic {
             int[][] newBoard = makeMoveInt(board, move, isBlack);
 
             // Evaluate the new board position using the evaluation function
-            double score = evalFunc.evaluate(newBoard);
+            double score = evalFunc.evaluate(newBoard, isBlack);
 
             // If the current score is better than the best score, update the best move
             if (score > bestScore) {
@@ -212,158 +246,72 @@ public class BotLogic {
     }
     public void undoMove(int[][] board, Move move, boolean isBlacky){
         this.board = board;
-        if(move.isAttackMove()){
-            if(isBlacky){
-                if(move.endCol>move.startCol)// Black attacked to the right
-                    board[move.startRow-1][move.startCol+1] = 1;
-                else // Black attacked to the left
-                    board[move.startRow-1][move.startCol-1] = 1;
-            }else{
-                if(move.endCol>move.startCol)// White attacked to the right
-                    board[move.startRow+1][move.startCol+1] = 2;
-                else // White attacked to the left
-                    board[move.startRow+1][move.startCol-1] = 2;
-            }
-
-        }
-        board[move.startRow][move.startCol] = board[move.endRow][move.endCol];
-        board[move.endRow][move.endCol] = 0;
+        FiancoRules.undoMove(board, move);
     }
-    public List<Move> getAllPossibleMoves(int [][] board, BoardScreen boardScreen, boolean maximization){
+    // Legal moves of the bot (maximization) or of the opponent, captures are already filtered as they are mandatory
+    public List<Move> getAllPossibleMoves(int [][] board, boolean maximization){
         this.board = board;
-        List<Move> moves = new ArrayList<>();
-        if(maximization){ // Bot moves
-            if(isBlack){
-                for (int row = 0; row < boardScreen.gridSize; row++) {
-                    for (int col = 0; col < boardScreen.gridSize; col++) {
-                        // Get all valid moves for this piece
-                        if (isBotPiece(row, col, board)) {
-                            List<Move> pieceMoves = getValidMovesForPiece(boardScreen, row, col, isBlack);
-                            moves.addAll(pieceMoves); // Add to the list of moves
-                        }
-                    }
-                }
-            }else{
-                for (int row = 8; row >= 0; row--) {
-                    for (int col = 0; col < boardScreen.gridSize; col++) {
-                        // Get all valid moves for this piece
-                        if (isBotPiece(row, col, board)) {
-                            List<Move> pieceMoves = getValidMovesForPiece(boardScreen, row, col, isBlack);
-                            moves.addAll(pieceMoves); // Add to the list of moves
-                        }
-                    }
-                }
-            }
-        }else{ // Opponent moves
-            if(!isBlack){
-                for (int row = 0; row < boardScreen.gridSize; row++) {
-                    for (int col = 0; col < boardScreen.gridSize; col++) {
-                        // Get all valid moves for this piece
-                        if (isOpponentPiece(row, col, board)){
-                            List<Move> pieceMoves = getValidMovesForPiece(boardScreen, row, col, !isBlack);
-                            moves.addAll(pieceMoves); // Add to the list of moves
-                        }
-                    }
-                }
-            }else{
-                for (int row = 8; row >= 0; row--) {
-                    for (int col = 0; col < boardScreen.gridSize; col++) {
-                        // Get all valid moves for this piece
-                        if (isOpponentPiece(row, col, board)) {
-                            List<Move> pieceMoves = getValidMovesForPiece(boardScreen, row, col, !isBlack);
-                            moves.addAll(pieceMoves); // Add to the list of moves
-                        }
-                    }
-                }
-            }
-        }
-
-        return moves;
+        return FiancoRules.getLegalMoves(board, maximization == isBlack);
     }
-    private List<Move> getValidMovesForPiece(BoardScreen boardScreen, int row, int col, boolean playAsBlack) {
-        List<Move> validMoves = new ArrayList<>();
-
-        // Try moving in all four directions (forward for white,backward for black, left and right) if allowed
-        if(playAsBlack && row>0)
-            addMoveIfValid(validMoves, row, col, row - 1, col); // Down
-        if(!playAsBlack && row<8)
-            addMoveIfValid(validMoves, row, col, row + 1, col); // Forward
-        if(col>0)
-            addMoveIfValid(validMoves, row, col, row, col - 1); // Left
-        if(col<8)
-            addMoveIfValid(validMoves, row, col, row, col + 1); // Right
-
-        // Check for attack moves
-        AddAttackToList(boardScreen.checkForCapturesSpec(board,!playAsBlack,row,col),validMoves);
-
-        return validMoves;
+    public void getAllPossibleMoves(int [][] board, boolean maximization, MoveList moves){
+        this.board = board;
+        FiancoRules.generateMoves(board, maximization == isBlack, moves);
     }
-    private void addMoveIfValid(List<Move> validMoves, int startRow, int startCol, int endRow, int endCol) {
-        if (board[endRow][endCol] == 0) {
-            validMoves.add(new Move(startRow, startCol, endRow, endCol, false, 0));
-        }
+    public void makeMove(int[][] board, int move){
+        this.board = board;
+        FiancoRules.makeMove(board, move);
     }
-    private void AddAttackToList(List<Move> attacks, List<Move> validMoves) {
-        for(Move attack : attacks){
-            validMoves.add(new Move(attack.startRow, attack.startCol, attack.endRow, attack.endCol, true, 0));
-        }
+    public void undoMove(int[][] board, int move){
+        this.board = board;
+        FiancoRules.undoMove(board, move);
     }
     // Method to check if the game is over
-    protected boolean isGameOver(int[][] board, BoardScreen boardScreen, int max) {
+    protected boolean isGameOver(int[][] board, int max) {
         this.board = board;
-        // Check if a black stone has reached row 0 (top)
-        for (int i = 0; i < board[0].length; i++) {
-            if (board[0][i] == 2) {
-                this.blackWins = true;
-                return true;
-            }
-        }
-        // Check if a white stone has reached row 8 (bottom)
-        for (int i = 0; i < board[8].length; i++) {
-            if (board[8][i] == 1) {
-                this.whiteWins = true;
-                return true;
-            }
+        int winner = FiancoRules.getWinner(board, (max == 1) == isBlack); // Color == 1 for current player, -1 for opponent
+        if (winner == FiancoRules.BLACK) {
+            this.blackWins = true;
+        } else if (winner == FiancoRules.WHITE) {
+            this.whiteWins = true;
         }
-        // Check if still are any white or black stones
-        int countW = 0;
-        int countB = 0;
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board.length; j++) {
-                if (board[i][j] == 1)
-                    countW++;
-                else if(board[i][j] == 2)
-                    countB++;
-                else if (countB!=0 && countW!=0) {
-                    break;
-                }
-            }
+        return winner != FiancoRules.EMPTY;
+    }
+    public void makeMove(FiancoPosition pos, Move move){
+        pos.makeMove(move.pack());
+    }
+    public void undoMove(FiancoPosition pos, Move move){
+        pos.undoMove(move.pack());
+    }
+    public void makeMove(FiancoPosition pos, int move){
+        pos.makeMove(move);
+    }
+    public void undoMove(FiancoPosition pos, int move){
+        pos.undoMove(move);
+    }
+    // Legal moves on the bitboards, captures are already filtered as they are mandatory
+    public void getAllPossibleMoves(FiancoPosition pos, boolean maximization, MoveList moves){
+        pos.generateMoves(maximization == isBlack, moves);
+    }
+    public List<Move> getAllPossibleMoves(FiancoPosition pos, boolean maximization){
+        MoveList packed = new MoveList();
+        getAllPossibleMoves(pos, maximization, packed);
+        List<Move> moves = new ArrayList<>(packed.size());
+        for (int i = 0; i < packed.size(); i++) {
+            moves.add(Move.unpack(packed.get(i)));
         }
-        if(countW==0){
+        return moves;
+    }
+    protected boolean isGameOver(FiancoPosition pos, int max) {
+        int winner = pos.winner((max == 1) == isBlack); // Color == 1 for current player, -1 for opponent
+        if (winner == FiancoRules.BLACK) {
             this.blackWins = true;
-            return true;
-        } else if (countB==0) {
+        } else if (winner == FiancoRules.WHITE) {
             this.whiteWins = true;
-            return true;
-        }
-        List<Move> moves = getAllPossibleMoves(board, boardScreen, max == 1); // Color == 1 for current player, -1 for opponent
-        if(moves.isEmpty()){
-            if((max==1 && isBlack) || (max==-1 && !isBlack)){
-                this.whiteWins=true;
-            }else{
-                this.blackWins=true;
-            }
-            return true;
         }
-
-        return false;
+        return winner != FiancoRules.EMPTY;
     }
     public int[][] deepCopyBoard(int[][] originalBoard) {
-        int[][] copy = new int[originalBoard.length][originalBoard[0].length];
-        for (int i = 0; i < originalBoard.length; i++) {
-            System.arraycopy(originalBoard[i], 0, copy[i], 0, originalBoard[i].length);
-        }
-        return copy;
+        return FiancoRules.copyBoard(originalBoard);
     }
 
     public boolean didBlackWin(){
@@ -1,171 +1,312 @@
 package io.github.fianco;
 
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Iterative deepening negamax with a transposition table. With more than one thread it runs a
+ * Lazy SMP search: helper threads search the same position with their own board and hash, starting
+ * at alternating depths and with the root moves rotated, and share the transposition table with the
+ * main thread. The move of the deepest finished iteration is played.
+ *
+ * The search is a principal variation search: only the first move of a node gets the full window.
+ * The main thread looks at the clock every few nodes and stops all threads when the time is up, the
+ * unfinished iteration is thrown away.
+ */
 public class CompetitionBot extends Bot {
+    private static final int CHECK_INTERVAL = 1024; // nodes between two looks at the clock, a power of two
+
     private int depthLimit; // Depth limit for alpha-beta pruning
-    private ZobristTransposition zobristTransposition; // Instance of ZobristTransposition
+    private ZobristTransposition zobristTransposition; // Instance of ZobristTransposition, shared by all search threads
     private final long timeConstraint;
-    private int flag = 0;
+    private final int threads; // search threads, the main one included
+    private volatile boolean stop; // set when the time is up or the main thread is done
+    private final MoveOrdering[] orderings; // one per search thread, kept from move to move
 
     public CompetitionBot(boolean isBlack, int[][] board, int depthLimit, long timeConstraint) {
+        this(isBlack, board, depthLimit, timeConstraint, Runtime.getRuntime().availableProcessors());
+    }
+
+    public CompetitionBot(boolean isBlack, int[][] board, int depthLimit, long timeConstraint, int threads) {
         super(isBlack, board);
         this.depthLimit = depthLimit; // Set the maximum depth for the search
         this.timeConstraint = timeConstraint;
+        this.threads = Math.max(1, threads);
+        this.orderings = new MoveOrdering[this.threads];
+        for (int id = 0; id < this.threads; id++) {
+            orderings[id] = new MoveOrdering(depthLimit);
+        }
         this.zobristTransposition = new ZobristTransposition(); // Initialize ZobristTransposition
-        this.zobristTransposition.resetTranspositionTable();
         this.zobristTransposition.computeZobristHash(board); // Compute initial Zobrist hash for the current board
     }
 
-    // Main method for the bot to make its move
-    public void calculate(BoardScreen boardScreen, int[][] board) {
-        this.zobristTransposition.computeZobristHash(board);
-        BotLogic botLogic = new BotLogic(isBlack);
-        loadTranspositionTable("transposition_table.ser");
-        Move bestMove = iterativeDeepening(boardScreen, board, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE, 1, timeConstraint, botLogic);
-        System.out.println("best move " + bestMove.startRow + " " + bestMove.startCol + " to " + bestMove.endRow + " " + bestMove.endCol + " " + bestMove.evaluation);
+    // Main method for the bot to pick its move
+    public Move findMove(int[][] board) {
+        long rootHash = this.zobristTransposition.computeZobristHash(board);
+        openTranspositionTable(tableFile()); // kept from earlier moves and games
 
-        if (bestMove != null) {
-            // Execute the move
-            if (bestMove.isAttackMove) {
-                boardScreen.botAttackStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            } else {
-                boardScreen.botMoveStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
+        stop = false;
+        List<Searcher> helpers = new ArrayList<>();
+        List<Thread> helperThreads = new ArrayList<>();
+        for (int id = 1; id < threads; id++) {
+            Searcher helper = new Searcher(id, board, rootHash);
+            Thread thread = new Thread(() -> helper.iterativeDeepening(depthLimit, Long.MAX_VALUE), "CompetitionBot helper " + id);
+            thread.setDaemon(true);
+            helpers.add(helper);
+            helperThreads.add(thread);
+            thread.start();
+        }
+
+        Searcher main = new Searcher(0, board, rootHash);
+        main.iterativeDeepening(depthLimit, System.currentTimeMillis() + timeConstraint);
+
+        stop = true;
+        for (Thread thread : helperThreads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
-        saveTranspositionTable("transposition_table.ser");
-    }
-    private Move iterativeDeepening(BoardScreen boardScreen, int[][] board, int maxDepth, int alpha, int beta, int max, long timeLimitMillis, BotLogic botLogic) {
-        Move bestMove = null;
-        // Capture the start time of the search
-        long startTime = System.currentTimeMillis();
-
-        // Iteratively increase the depth from 1 up to the maximum depth limit
-        for (int currentDepth = 1; currentDepth <= maxDepth; currentDepth+=1) {
-            // Check the elapsed time
-            long elapsedTime = System.currentTimeMillis() - startTime;
-            if (elapsedTime >= timeLimitMillis) {
-                System.out.println("Time limit reached. Stopping search at depth: " + (currentDepth - 1));
-                break;
+
+        // A helper may have finished a deeper iteration than the main thread
+        Searcher best = main;
+        for (Searcher helper : helpers) {
+            if (helper.completedDepth > best.completedDepth && helper.bestMove != null) {
+                best = helper;
             }
+        }
+        Move bestMove = best.bestMove;
+
+        if (bestMove != null) {
+            System.out.println("best move " + bestMove.startRow + " " + bestMove.startCol + " to " + bestMove.endRow + " " + bestMove.endCol + " " + bestMove.evaluation
+                + " depth " + best.completedDepth + " (thread " + best.id + " of " + threads + ")");
+        }
+        return bestMove;
+    }
 
-            System.out.println("Searching at depth: " + currentDepth);
+    // The search state of one thread: thread 0 is the main search, the others are Lazy SMP helpers
+    private class Searcher {
+        private final int id;
+        private final FiancoPosition pos;
+        private final BotLogic botLogic = new BotLogic(isBlack);
+        private final MoveList[] moveLists = MoveList.forPlies(depthLimit + 1);
+        private final PrincipalVariation pv = new PrincipalVariation(depthLimit);
+        private final MoveOrdering ordering;
+        private long hash;
+        private int rootDepth; // depth of the current iteration, ply = rootDepth - depth
+        private boolean aborted;
+        private long deadline; // the running iteration is given up at this time
+        private long nodes;
+        private Move bestMove;
+        private int completedDepth;
 
-            // If you only have one move and it's an attack move you should not look further
-            List<Move> moves = botLogic.getAllPossibleMoves(board,boardScreen, max == 1);
-            moves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
+        Searcher(int id, int[][] board, long rootHash) {
+            this.id = id;
+            this.pos = new FiancoPosition(board);
+            this.hash = rootHash;
+            this.ordering = orderings[id];
+            ordering.newSearch();
+        }
 
-            if(currentDepth==1 && moves.size() == 1){
-                bestMove = moves.get(0);
-                break;
-            }
-            else if (moves.get(0).isAttackMove) {
-                moves.removeIf(move -> !move.isAttackMove);
-            }
-            if(currentDepth==1 && moves.size()==1){
-                bestMove = moves.get(0);
-                break;
-            }
-            // Perform a negamax search with the current depth limit
-            Move currentBestMove = negamax(boardScreen, board, currentDepth, alpha, beta, max, botLogic);
+        private void iterativeDeepening(int maxDepth, long endTime) {
+            int max = 1;
 
-            if (currentBestMove != null) {
-                bestMove = currentBestMove; // Update the best move found so far
+            // Helpers start at alternating depths so they do not all search the same iteration
+            for (int currentDepth = 1 + id % 2; currentDepth <= maxDepth; currentDepth += 1) {
+                // Check the time
+                if (System.currentTimeMillis() >= endTime) {
+                    System.out.println("Time limit reached. Stopping search at depth: " + (currentDepth - 1));
+                    break;
+                }
+
+                if (id == 0) {
+                    System.out.println("Searching at depth: " + currentDepth);
+                }
 
-                // If we find a winning move, break out of the loop early
-                if (Math.abs(bestMove.evaluation) == 10000) {
+                // If you only have one move and it's an attack move you should not look further
+                MoveList moves = moveLists[currentDepth];
+                botLogic.getAllPossibleMoves(pos, max == 1, moves); // captures are already forced
+
+                if (moves.size() <= 1) {
+                    if (id == 0 && currentDepth == 1) {
+                        bestMove = moves.isEmpty() ? null : Move.unpack(moves.get(0));
+                    }
                     break;
                 }
+
+                // Perform a negamax search with the current depth limit. It is stopped when the time runs
+                // out, unless there is no move to fall back on yet.
+                rootDepth = currentDepth;
+                deadline = bestMove == null ? Long.MAX_VALUE : endTime;
+                int score = negamax(currentDepth, -Integer.MAX_VALUE, Integer.MAX_VALUE, max);
+                if (aborted) {
+                    if (id == 0) {
+                        System.out.println("Time limit reached. Stopping search at depth: " + (currentDepth - 1));
+                    }
+                    break; // the unfinished iteration is thrown away
+                }
+                Move currentBestMove = pv.toMove(score);
+
+                if (currentBestMove != null) {
+                    bestMove = currentBestMove; // Update the best move found so far
+                    completedDepth = currentDepth;
+
+                    // If we find a winning move, break out of the loop early
+                    if (Math.abs(bestMove.evaluation) == 10000) {
+                        break;
+                    }
+                }
             }
         }
 
-        return bestMove;
-    }
+        // Returns the score for the side to move, the best line is left in pv.
+        // Entries are stored for the node itself with a bound, so they can be shared between threads.
+        private int negamax(int depth, int alpha, int beta, int max) {
+            int ply = rootDepth - depth;
+            pv.clear(ply);
+            if ((++nodes & (CHECK_INTERVAL - 1)) == 0 && System.currentTimeMillis() >= deadline) {
+                stop = true;
+            }
+            if (stop) {
+                aborted = true;
+                return 0;
+            }
+            long entry = zobristTransposition.probe(hash);
+            if (entry != TranspositionTable.MISS && TranspositionTable.depth(entry) >= depth) {
+                int evaluation = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER_BOUND && evaluation >= beta)
+                    || (bound == TranspositionTable.UPPER_BOUND && evaluation <= alpha)) {
+                    pv.set(ply, TranspositionTable.move(entry));
+                    return evaluation;
+                }
+            }
+            if (depth == 0 || botLogic.isGameOver(pos, max)) {
+                int evaluation;
+                if ((botLogic.didBlackWin() && isBlack) || (botLogic.didWhiteWin() && !isBlack)) {
+                    evaluation = 10000;
+                } else if ((botLogic.didBlackWin() && !isBlack) || (botLogic.didWhiteWin() && isBlack)) {
+                    evaluation = -10000;
+                } else {
+                    evaluation = botLogic.evaluateBoard(pos); // Evaluate the board at the leaf node
+                }
+                botLogic.setWinsToFalse();
 
-    private Move negamax(BoardScreen boardScreen, int[][] board, int depth, int alpha, int beta, int max, BotLogic botLogic) {
-        if (zobristTransposition.isInTranspositionTable() && zobristTransposition.getEntryFromTranspositionTable().getDepth() >= depth) { //
-            TranspositionEntry entry = zobristTransposition.getEntryFromTranspositionTable();
-            return new Move(entry.getStartRow(), entry.getStartCol(), entry.getEndRow(), entry.getEndCol(), entry.isAttack(), entry.getEvaluation());
-        }
-        if (depth == 0 || botLogic.isGameOver(board,boardScreen,max)) {
-            int evaluation;
-            if((botLogic.didBlackWin() && isBlack) || (botLogic.didWhiteWin() && !isBlack)){
-                evaluation = 10000;
-            } else if ((botLogic.didBlackWin() && !isBlack) || (botLogic.didWhiteWin() && isBlack)) {
-                evaluation = -10000;
-            }else {
-                evaluation = botLogic.evaluateBoard(board); // Evaluate the board at the leaf node
+                return max * evaluation;
             }
-            botLogic.setWinsToFalse();
 
-            return new Move(-1,-1,-1,-1,false,max * evaluation); // Return the evaluation wrapped in a Move object
-        }
+            boolean black = (max == 1) == isBlack;
+            int alphaOrig = alpha;
+            int maxEval = Integer.MIN_VALUE;
+            int bestMove = 0;
 
-        List<Move> moves = botLogic.getAllPossibleMoves(board, boardScreen, max == 1); // Color == 1 for current player, -1 for opponent
-        moves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
+            // The move stored for this position is searched before the others are generated, when it
+            // cuts off they never are. Helpers keep their own order at the root.
+            int hashMove = entry != TranspositionTable.MISS && (ply > 0 || id == 0) ? TranspositionTable.move(entry) : 0;
+            if (hashMove != 0 && pos.isLegal(hashMove, black) && !suicideMove(pos, Move.to(hashMove) / 9, Move.to(hashMove) % 9, max)) {
+                maxEval = searchMove(hashMove, depth, alpha, beta, max, true);
+                if (aborted) {
+                    return 0;
+                }
+                bestMove = hashMove;
+                pv.update(ply, hashMove);
+                alpha = Math.max(alpha, maxEval);
+                if (alpha >= beta) {
+                    ordering.cutoff(hashMove, ply, depth, black);
+                }
+            } else {
+                hashMove = 0;
+            }
 
-        if (moves.get(0).isAttackMove) {
-            moves.removeIf(move -> !move.isAttackMove);
-        }
+            if (alpha < beta) {
+                MoveList moves = moveLists[depth]; // one list per remaining depth, reused by every node at that depth
+                botLogic.getAllPossibleMoves(pos, max == 1, moves); // Color == 1 for current player, -1 for opponent
+                ordering.order(moves, ply, black);
+                // Helpers try the root moves in a different order than the main thread
+                int offset = ply == 0 ? id % moves.size() : 0;
 
-        Move bestMove = null;
-        int maxEval = Integer.MIN_VALUE;
+                for (int n = 0; n < moves.size(); n++) {
+                    int move = moves.get((n + offset) % moves.size());
+                    if (move == hashMove || suicideMove(pos, Move.to(move) / 9, Move.to(move) % 9, max)) // already searched, suicide moves
+                        continue;
+                    int score = searchMove(move, depth, alpha, beta, max, maxEval == Integer.MIN_VALUE);
+                    if (aborted) {
+                        return 0;
+                    }
 
-        for (Move move : moves) {
-            if(suicideMove(board,move.endRow,move.endCol, max)) // suicide moves
-                continue;
-            botLogic.makeMove(board, move, isBlack && max == 1 || !isBlack && max == -1); // if true move is black, else white
-            if(move.isAttackMove)
-                zobristTransposition.updateZobristHashForAttack(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
-            else
-                zobristTransposition.updateZobristHash(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
+                    if (score > maxEval) {
+                        maxEval = score;
+                        bestMove = move;
+                        pv.update(ply, move);
+                    }
 
-            Move resultMove = negamax(boardScreen, board, depth - 1, -beta, -alpha, -max, botLogic); // Negate alpha, beta, and color
-            zobristTransposition.storeEntryInTranspositionTable(-resultMove.evaluation, move.isAttackMove, move.startRow, move.startCol, move.endRow, move.endCol, depth, flag);
+                    alpha = Math.max(alpha, maxEval);
+                    if (alpha >= beta) {
+                        ordering.cutoff(move, ply, depth, black);
+                        break; // Beta cut-off, no need to explore further if a winning move is found
+                    }
+                }
 
-            if (-resultMove.evaluation > maxEval) {
-                maxEval = -resultMove.evaluation;
-                bestMove = move.clone();
-                bestMove.evaluation = maxEval;
+                if (maxEval == Integer.MIN_VALUE) {
+                    pv.set(ply, moves.get(0)); // Fallback in case no best move was found
+                    return 0;
+                }
             }
 
-            // Undo the move
-            botLogic.undoMove(board, move, isBlack && max == 1 || !isBlack && max == -1);
+            int flag = maxEval <= alphaOrig ? TranspositionTable.UPPER_BOUND
+                : maxEval >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+            zobristTransposition.store(hash, maxEval, bestMove, depth, flag);
+            return maxEval;
+        }
 
-            if(move.isAttackMove)
-                zobristTransposition.updateZobristHashForAttack(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
+        // Plays the move, searches it and takes it back, the score is for the side to move before the move.
+        // The first move of a node gets the full window, the others a null window and a full one only if
+        // they beat alpha (PVS).
+        private int searchMove(int move, int depth, int alpha, int beta, int max, boolean first) {
+            int startRow = Move.from(move) / 9, startCol = Move.from(move) % 9;
+            int endRow = Move.to(move) / 9, endCol = Move.to(move) % 9;
+            botLogic.makeMove(pos, move);
+            long parentHash = hash;
+            if (Move.isAttack(move))
+                hash = zobristTransposition.hashAfterAttack(hash, startRow, startCol, endRow, endCol, pos.pieceAt(endRow, endCol));
             else
-                zobristTransposition.updateZobristHash(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
+                hash = zobristTransposition.hashAfterMove(hash, startRow, startCol, endRow, endCol, pos.pieceAt(endRow, endCol));
 
-            alpha = Math.max(alpha, maxEval);
-            if (alpha >= beta) {
-                break; // Beta cut-off, no need to explore further if a winning move is found
+            int score;
+            if (first) {
+                score = -negamax(depth - 1, -beta, -alpha, -max); // Negate alpha, beta, and color
+            } else {
+                score = -negamax(depth - 1, -alpha - 1, -alpha, -max);
+                if (score > alpha && score < beta && !aborted) {
+                    score = -negamax(depth - 1, -beta, -alpha, -max);
+                }
             }
-        }
 
-        if (bestMove == null) {
-            bestMove = moves.get(0); // Fallback in case no best move was found
+            // Undo the move
+            botLogic.undoMove(pos, move);
+            hash = parentHash;
+            return score;
         }
-
-        return bestMove;
     }
 
-    public boolean suicideMove(int [][]board, int row, int col, int max){
-        if(row!=0 && row!=board.length-1 && col!=0 && col!=board.length-1)
+    public boolean suicideMove(FiancoPosition pos, int row, int col, int max){
+        if(row!=0 && row!=FiancoPosition.SIZE-1 && col!=0 && col!=FiancoPosition.SIZE-1)
             if((max==1 && isBlack) || (max==-1 && !isBlack)) // Bot black plays
-                if((board[row-1][col-1] == 1 && board[row+1][col+1] == 0) || (board[row-1][col+1] == 1 && board[row+1][col-1] == 0))
+                if((pos.pieceAt(row-1, col-1) == 1 && pos.pieceAt(row+1, col+1) == 0) || (pos.pieceAt(row-1, col+1) == 1 && pos.pieceAt(row+1, col-1) == 0))
                     return true;
             else if((max==1 && !isBlack) || (max==-1 && isBlack)) // Bot white plays
-                if((board[row+1][col-1] == 2 && board[row-1][col+1] == 0) || (board[row+1][col+1] == 2 && board[row-1][col-1] == 0))
+                if((pos.pieceAt(row+1, col-1) == 2 && pos.pieceAt(row-1, col+1) == 0) || (pos.pieceAt(row+1, col+1) == 2 && pos.pieceAt(row-1, col-1) == 0))
                     return true;
         return false;
     }
-    public void saveTranspositionTable(String filename) {
-        zobristTransposition.saveTranspositionTable(filename);
+    // Map the transposition table file, one per bot and color since the evaluation depends on both
+    public void openTranspositionTable(String filename) {
+        zobristTransposition.openTranspositionTable(filename);
     }
-    // Load the transposition table from a file
-    public void loadTranspositionTable(String filename) {
-        zobristTransposition.loadTranspositionTable(filename);
+    private String tableFile() {
+        return "transposition_table_" + getClass().getSimpleName() + (isBlack ? "_black.tt" : "_white.tt");
     }
     public void changeSide(){
         isBlack = !isBlack;
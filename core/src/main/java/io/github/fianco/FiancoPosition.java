@@ -0,0 +1,520 @@
+package io.github.fianco;
+
+import java.util.SplittableRandom;
+
+/**
+ * Bitboard representation of a Fianco position.
+ * Squares are numbered row * 9 + col. Every color owns an 81-bit set split over two longs:
+ * the low word holds rows 0-6 (squares 0-62) and the high word holds rows 7-8 (squares 63-80),
+ * so a whole row never straddles the two words.
+ */
+public class FiancoPosition {
+    public static final int SIZE = 9;
+    public static final int SQUARES = SIZE * SIZE;
+
+    private static final int HI_OFFSET = 63;
+    static final long LO_MASK = (1L << 63) - 1;
+    static final long HI_MASK = (1L << 18) - 1;
+
+    // Column and row masks split over the two words
+    static final long[] COL_LO = new long[SIZE];
+    static final long[] COL_HI = new long[SIZE];
+    static final long[] ROW_LO = new long[SIZE];
+    static final long[] ROW_HI = new long[SIZE];
+    static final long INTERIOR_LO, INTERIOR_HI; // rows 1-7 and cols 1-7
+    static final long BONUS_COL_LO, BONUS_COL_HI; // cols 0, 3, 4, 5 and 8
+    static final int[] BONUS_COL = new int[SQUARES]; // 1 on a bonus column square
+
+    static {
+        long interiorLo = 0, interiorHi = 0, bonusLo = 0, bonusHi = 0;
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                int sq = row * SIZE + col;
+                boolean interior = row != 0 && row != 8 && col != 0 && col != 8;
+                boolean bonus = col % 8 == 0 || col == 3 || col == 4 || col == 5;
+                if (sq < HI_OFFSET) {
+                    long bit = 1L << sq;
+                    COL_LO[col] |= bit;
+                    ROW_LO[row] |= bit;
+                    if (interior) interiorLo |= bit;
+                    if (bonus) bonusLo |= bit;
+                } else {
+                    long bit = 1L << (sq - HI_OFFSET);
+                    COL_HI[col] |= bit;
+                    ROW_HI[row] |= bit;
+                    if (interior) interiorHi |= bit;
+                    if (bonus) bonusHi |= bit;
+                }
+                BONUS_COL[sq] = bonus ? 1 : 0;
+            }
+        }
+        INTERIOR_LO = interiorLo;
+        INTERIOR_HI = interiorHi;
+        BONUS_COL_LO = bonusLo;
+        BONUS_COL_HI = bonusHi;
+    }
+
+    // Destination masks that drop the squares a shift wrapped around the board edge
+    static final long NOT_COL0_LO = LO_MASK & ~COL_LO[0], NOT_COL0_HI = HI_MASK & ~COL_HI[0];
+    static final long NOT_COL8_LO = LO_MASK & ~COL_LO[8], NOT_COL8_HI = HI_MASK & ~COL_HI[8];
+    static final long NOT_COL01_LO = NOT_COL0_LO & ~COL_LO[1], NOT_COL01_HI = NOT_COL0_HI & ~COL_HI[1];
+    static final long NOT_COL78_LO = NOT_COL8_LO & ~COL_LO[7], NOT_COL78_HI = NOT_COL8_HI & ~COL_HI[7];
+
+    long whiteLo, whiteHi;
+    long blackLo, blackHi;
+    // Stone counts, only captures change them so make/undo keep them up to date
+    private int whiteCount, blackCount;
+    // Sum of the rows and number of stones on a bonus column per color, also kept up to date by make/undo
+    private int whiteRows, blackRows;
+    private int whiteColumns, blackColumns;
+
+    public FiancoPosition() {
+    }
+
+    public FiancoPosition(int[][] board) {
+        setBoard(board);
+    }
+
+    public FiancoPosition(FiancoPosition other) {
+        copyFrom(other);
+    }
+
+    // Same as the copy constructor, for callers that reuse one position object
+    public void copyFrom(FiancoPosition other) {
+        this.whiteLo = other.whiteLo;
+        this.whiteHi = other.whiteHi;
+        this.blackLo = other.blackLo;
+        this.blackHi = other.blackHi;
+        this.whiteCount = other.whiteCount;
+        this.blackCount = other.blackCount;
+        this.whiteRows = other.whiteRows;
+        this.blackRows = other.blackRows;
+        this.whiteColumns = other.whiteColumns;
+        this.blackColumns = other.blackColumns;
+    }
+
+    // Load the position from the 9x9 board used by the UI (0 = empty, 1 = white, 2 = black)
+    public void setBoard(int[][] board) {
+        whiteLo = whiteHi = blackLo = blackHi = 0;
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                if (board[row][col] != 0) {
+                    set(row * SIZE + col, board[row][col] == 2);
+                }
+            }
+        }
+        whiteCount = count(whiteLo, whiteHi);
+        blackCount = count(blackLo, blackHi);
+        whiteRows = rowSum(whiteLo, whiteHi);
+        blackRows = rowSum(blackLo, blackHi);
+        whiteColumns = count(whiteLo & BONUS_COL_LO, whiteHi & BONUS_COL_HI);
+        blackColumns = count(blackLo & BONUS_COL_LO, blackHi & BONUS_COL_HI);
+    }
+
+    public int[][] toBoard() {
+        int[][] board = new int[SIZE][SIZE];
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                board[row][col] = pieceAt(row, col);
+            }
+        }
+        return board;
+    }
+
+    // True if both positions have the same stones on the same squares
+    public boolean sameStones(FiancoPosition other) {
+        return whiteLo == other.whiteLo && whiteHi == other.whiteHi && blackLo == other.blackLo && blackHi == other.blackHi;
+    }
+
+    // 0 = empty, 1 = white, 2 = black
+    public int pieceAt(int row, int col) {
+        return pieceAt(row * SIZE + col);
+    }
+
+    public int pieceAt(int sq) {
+        if (sq < HI_OFFSET) {
+            long bit = 1L << sq;
+            return (whiteLo & bit) != 0 ? 1 : (blackLo & bit) != 0 ? 2 : 0;
+        }
+        long bit = 1L << (sq - HI_OFFSET);
+        return (whiteHi & bit) != 0 ? 1 : (blackHi & bit) != 0 ? 2 : 0;
+    }
+
+    public int countWhite() {
+        return whiteCount;
+    }
+
+    public int countBlack() {
+        return blackCount;
+    }
+
+    public int whiteRowSum() {
+        return whiteRows;
+    }
+
+    public int blackRowSum() {
+        return blackRows;
+    }
+
+    public int whiteOnBonusColumns() {
+        return whiteColumns;
+    }
+
+    public int blackOnBonusColumns() {
+        return blackColumns;
+    }
+
+    // A black stone on row 0 or a white stone on row 8 ends the game
+    public boolean blackOnGoalRow() {
+        return (blackLo & ROW_LO[0]) != 0;
+    }
+
+    public boolean whiteOnGoalRow() {
+        return (whiteHi & ROW_HI[8]) != 0;
+    }
+
+    private void set(int sq, boolean black) {
+        if (sq < HI_OFFSET) {
+            if (black) blackLo |= 1L << sq;
+            else whiteLo |= 1L << sq;
+        } else {
+            if (black) blackHi |= 1L << (sq - HI_OFFSET);
+            else whiteHi |= 1L << (sq - HI_OFFSET);
+        }
+    }
+
+    private void clear(int sq, boolean black) {
+        if (sq < HI_OFFSET) {
+            if (black) blackLo &= ~(1L << sq);
+            else whiteLo &= ~(1L << sq);
+        } else {
+            if (black) blackHi &= ~(1L << (sq - HI_OFFSET));
+            else whiteHi &= ~(1L << (sq - HI_OFFSET));
+        }
+    }
+
+    private boolean isBlackAt(int sq) {
+        return sq < HI_OFFSET ? (blackLo & (1L << sq)) != 0 : (blackHi & (1L << (sq - HI_OFFSET))) != 0;
+    }
+
+    // Play a move; for captures the jumped stone sits halfway between start and end
+    public void makeMove(int from, int to, boolean capture) {
+        boolean black = isBlackAt(from);
+        clear(from, black);
+        set(to, black);
+        int rows = to / SIZE - from / SIZE, columns = BONUS_COL[to] - BONUS_COL[from];
+        if (black) {
+            blackRows += rows;
+            blackColumns += columns;
+        } else {
+            whiteRows += rows;
+            whiteColumns += columns;
+        }
+        if (capture) {
+            int over = (from + to) >> 1;
+            clear(over, !black);
+            if (black) {
+                whiteCount--;
+                whiteRows -= over / SIZE;
+                whiteColumns -= BONUS_COL[over];
+            } else {
+                blackCount--;
+                blackRows -= over / SIZE;
+                blackColumns -= BONUS_COL[over];
+            }
+        }
+    }
+
+    public void makeMove(int move) {
+        makeMove(Move.from(move), Move.to(move), Move.isAttack(move));
+    }
+
+    public void undoMove(int move) {
+        undoMove(Move.from(move), Move.to(move), Move.isAttack(move));
+    }
+
+    public void undoMove(int from, int to, boolean capture) {
+        boolean black = isBlackAt(to);
+        clear(to, black);
+        set(from, black);
+        int rows = to / SIZE - from / SIZE, columns = BONUS_COL[to] - BONUS_COL[from];
+        if (black) {
+            blackRows -= rows;
+            blackColumns -= columns;
+        } else {
+            whiteRows -= rows;
+            whiteColumns -= columns;
+        }
+        if (capture) {
+            int over = (from + to) >> 1;
+            set(over, !black);
+            if (black) {
+                whiteCount++;
+                whiteRows += over / SIZE;
+                whiteColumns += BONUS_COL[over];
+            } else {
+                blackCount++;
+                blackRows += over / SIZE;
+                blackColumns += BONUS_COL[over];
+            }
+        }
+    }
+
+    // Shift an 81-bit set towards higher squares (row + 1 is +9, col + 1 is +1)
+    static long upLo(long lo, int n) {
+        return (lo << n) & LO_MASK;
+    }
+
+    static long upHi(long lo, long hi, int n) {
+        return ((hi << n) | (lo >>> (HI_OFFSET - n))) & HI_MASK;
+    }
+
+    // Shift an 81-bit set towards lower squares
+    static long downLo(long lo, long hi, int n) {
+        return ((lo >>> n) | (hi << (HI_OFFSET - n))) & LO_MASK;
+    }
+
+    static long downHi(long hi, int n) {
+        return hi >>> n;
+    }
+
+    /**
+     * Fills the list with every legal move for the given color, packed as in Move.pack.
+     * Captures are mandatory in Fianco, so when at least one capture exists only the captures are generated.
+     * Moves are emitted closest to the goal row first.
+     */
+    public void generateMoves(boolean black, MoveList moves) {
+        moves.clear();
+        long ownLo = black ? blackLo : whiteLo, ownHi = black ? blackHi : whiteHi;
+        long oppLo = black ? whiteLo : blackLo, oppHi = black ? whiteHi : blackHi;
+        long emptyLo = LO_MASK & ~(ownLo | oppLo), emptyHi = HI_MASK & ~(ownHi | oppHi);
+
+        if (black) {
+            // Black jumps downwards: to = from - 20 over from - 10, or to = from - 16 over from - 8
+            long leftLo = downLo(ownLo, ownHi, 20) & downLo(oppLo, oppHi, 10) & emptyLo & NOT_COL78_LO;
+            long leftHi = downHi(ownHi, 20) & downHi(oppHi, 10) & emptyHi & NOT_COL78_HI;
+            long rightLo = downLo(ownLo, ownHi, 16) & downLo(oppLo, oppHi, 8) & emptyLo & NOT_COL01_LO;
+            long rightHi = downHi(ownHi, 16) & downHi(oppHi, 8) & emptyHi & NOT_COL01_HI;
+            if ((leftLo | leftHi | rightLo | rightHi) != 0) {
+                addMoves(moves, leftLo, leftHi, 20, true, true);
+                addMoves(moves, rightLo, rightHi, 16, true, true);
+                return;
+            }
+            addMoves(moves, downLo(ownLo, ownHi, 9) & emptyLo, downHi(ownHi, 9) & emptyHi, 9, false, true);
+        } else {
+            // White jumps upwards: to = from + 20 over from + 10, or to = from + 16 over from + 8
+            long rightLo = upLo(ownLo, 20) & upLo(oppLo, 10) & emptyLo & NOT_COL01_LO;
+            long rightHi = upHi(ownLo, ownHi, 20) & upHi(oppLo, oppHi, 10) & emptyHi & NOT_COL01_HI;
+            long leftLo = upLo(ownLo, 16) & upLo(oppLo, 8) & emptyLo & NOT_COL78_LO;
+            long leftHi = upHi(ownLo, ownHi, 16) & upHi(oppLo, oppHi, 8) & emptyHi & NOT_COL78_HI;
+            if ((leftLo | leftHi | rightLo | rightHi) != 0) {
+                addMoves(moves, rightLo, rightHi, -20, true, false);
+                addMoves(moves, leftLo, leftHi, -16, true, false);
+                return;
+            }
+            addMoves(moves, upLo(ownLo, 9) & emptyLo, upHi(ownLo, ownHi, 9) & emptyHi, -9, false, false);
+        }
+        // Sideways moves
+        addMoves(moves, upLo(ownLo, 1) & emptyLo & NOT_COL0_LO, upHi(ownLo, ownHi, 1) & emptyHi & NOT_COL0_HI, -1, false, black);
+        addMoves(moves, downLo(ownLo, ownHi, 1) & emptyLo & NOT_COL8_LO, downHi(ownHi, 1) & emptyHi & NOT_COL8_HI, 1, false, black);
+    }
+
+    /**
+     * A random legal move of the color, drawn uniformly from the moves generateMoves would give but
+     * without building the list, or -1 if the color is stuck. With goalFirst a move onto the goal row
+     * is taken whenever there is one.
+     */
+    public int randomMove(boolean black, SplittableRandom random, boolean goalFirst) {
+        long ownLo = black ? blackLo : whiteLo, ownHi = black ? blackHi : whiteHi;
+        long oppLo = black ? whiteLo : blackLo, oppHi = black ? whiteHi : blackHi;
+        long emptyLo = LO_MASK & ~(ownLo | oppLo), emptyHi = HI_MASK & ~(ownHi | oppHi);
+
+        // Destination sets with the from - to delta, captures if there are any, else forward and sideways
+        long lo0, hi0, lo1, hi1, lo2 = 0, hi2 = 0;
+        int d0, d1, d2 = 0;
+        if (black) {
+            lo0 = downLo(ownLo, ownHi, 20) & downLo(oppLo, oppHi, 10) & emptyLo & NOT_COL78_LO;
+            hi0 = downHi(ownHi, 20) & downHi(oppHi, 10) & emptyHi & NOT_COL78_HI;
+            lo1 = downLo(ownLo, ownHi, 16) & downLo(oppLo, oppHi, 8) & emptyLo & NOT_COL01_LO;
+            hi1 = downHi(ownHi, 16) & downHi(oppHi, 8) & emptyHi & NOT_COL01_HI;
+            d0 = 20;
+            d1 = 16;
+        } else {
+            lo0 = upLo(ownLo, 20) & upLo(oppLo, 10) & emptyLo & NOT_COL01_LO;
+            hi0 = upHi(ownLo, ownHi, 20) & upHi(oppLo, oppHi, 10) & emptyHi & NOT_COL01_HI;
+            lo1 = upLo(ownLo, 16) & upLo(oppLo, 8) & emptyLo & NOT_COL78_LO;
+            hi1 = upHi(ownLo, ownHi, 16) & upHi(oppLo, oppHi, 8) & emptyHi & NOT_COL78_HI;
+            d0 = -20;
+            d1 = -16;
+        }
+        boolean capture = (lo0 | hi0 | lo1 | hi1) != 0;
+        if (!capture) {
+            lo0 = black ? downLo(ownLo, ownHi, 9) & emptyLo : upLo(ownLo, 9) & emptyLo;
+            hi0 = black ? downHi(ownHi, 9) & emptyHi : upHi(ownLo, ownHi, 9) & emptyHi;
+            lo1 = upLo(ownLo, 1) & emptyLo & NOT_COL0_LO;
+            hi1 = upHi(ownLo, ownHi, 1) & emptyHi & NOT_COL0_HI;
+            lo2 = downLo(ownLo, ownHi, 1) & emptyLo & NOT_COL8_LO;
+            hi2 = downHi(ownHi, 1) & emptyHi & NOT_COL8_HI;
+            d0 = black ? 9 : -9;
+            d1 = -1;
+            d2 = 1;
+        }
+
+        if (goalFirst) {
+            // Only forward moves and captures can reach the goal row
+            long goalLo = black ? ROW_LO[0] : 0, goalHi = black ? 0 : ROW_HI[SIZE - 1];
+            if (((lo0 & goalLo) | (hi0 & goalHi)) != 0) {
+                return nthMove(lo0 & goalLo, hi0 & goalHi, 0, d0, capture);
+            }
+            if (capture && ((lo1 & goalLo) | (hi1 & goalHi)) != 0) {
+                return nthMove(lo1 & goalLo, hi1 & goalHi, 0, d1, true);
+            }
+        }
+
+        int count0 = Long.bitCount(lo0) + Long.bitCount(hi0);
+        int count1 = Long.bitCount(lo1) + Long.bitCount(hi1);
+        int count2 = Long.bitCount(lo2) + Long.bitCount(hi2);
+        if (count0 + count1 + count2 == 0) {
+            return -1;
+        }
+        int n = random.nextInt(count0 + count1 + count2);
+        if (n < count0) {
+            return nthMove(lo0, hi0, n, d0, capture);
+        }
+        n -= count0;
+        if (n < count1) {
+            return nthMove(lo1, hi1, n, d1, capture);
+        }
+        return nthMove(lo2, hi2, n - count1, d2, false);
+    }
+
+    // The move to the n-th square of the set
+    private static int nthMove(long toLo, long toHi, int n, int delta, boolean capture) {
+        int to;
+        int countLo = Long.bitCount(toLo);
+        if (n < countLo) {
+            for (; n > 0; n--) {
+                toLo &= toLo - 1;
+            }
+            to = Long.numberOfTrailingZeros(toLo);
+        } else {
+            for (n -= countLo; n > 0; n--) {
+                toHi &= toHi - 1;
+            }
+            to = Long.numberOfTrailingZeros(toHi) + HI_OFFSET;
+        }
+        return Move.pack(to + delta, to, capture);
+    }
+
+    // Turn a set of destination squares into moves, from = to + delta
+    private static void addMoves(MoveList moves, long toLo, long toHi, int delta, boolean capture, boolean lowFirst) {
+        if (lowFirst) {
+            for (long bits = toLo; bits != 0; bits &= bits - 1) {
+                addMove(moves, Long.numberOfTrailingZeros(bits), delta, capture);
+            }
+            for (long bits = toHi; bits != 0; bits &= bits - 1) {
+                addMove(moves, Long.numberOfTrailingZeros(bits) + HI_OFFSET, delta, capture);
+            }
+        } else {
+            for (long bits = toHi; bits != 0; bits &= ~Long.highestOneBit(bits)) {
+                addMove(moves, 63 - Long.numberOfLeadingZeros(bits) + HI_OFFSET, delta, capture);
+            }
+            for (long bits = toLo; bits != 0; bits &= ~Long.highestOneBit(bits)) {
+                addMove(moves, 63 - Long.numberOfLeadingZeros(bits), delta, capture);
+            }
+        }
+    }
+
+    private static void addMove(MoveList moves, int to, int delta, boolean capture) {
+        moves.add(Move.pack(to + delta, to, capture));
+    }
+
+    /**
+     * 1 or 2 if white or black has won, 0 if the game goes on. A stone on the far row or an opponent
+     * without stones wins and the side to move loses if it is stuck. Everything but the stuck test
+     * is a mask or counter lookup, and the stuck test stops at the first kind of move it finds.
+     */
+    public int winner(boolean blackToMove) {
+        if (blackOnGoalRow() || whiteCount == 0) {
+            return 2;
+        }
+        if (whiteOnGoalRow() || blackCount == 0) {
+            return 1;
+        }
+        if (!hasMoves(blackToMove)) {
+            return blackToMove ? 1 : 2;
+        }
+        return 0;
+    }
+
+    // True if the color has at least one legal move
+    public boolean hasMoves(boolean black) {
+        long ownLo = black ? blackLo : whiteLo, ownHi = black ? blackHi : whiteHi;
+        long oppLo = black ? whiteLo : blackLo, oppHi = black ? whiteHi : blackHi;
+        long emptyLo = LO_MASK & ~(ownLo | oppLo), emptyHi = HI_MASK & ~(ownHi | oppHi);
+        long sideways = (upLo(ownLo, 1) & emptyLo & NOT_COL0_LO) | (upHi(ownLo, ownHi, 1) & emptyHi & NOT_COL0_HI)
+            | (downLo(ownLo, ownHi, 1) & emptyLo & NOT_COL8_LO) | (downHi(ownHi, 1) & emptyHi & NOT_COL8_HI);
+        if (sideways != 0) {
+            return true;
+        }
+        if (black) {
+            return ((downLo(ownLo, ownHi, 9) & emptyLo) | (downHi(ownHi, 9) & emptyHi)) != 0
+                || ((downLo(ownLo, ownHi, 20) & downLo(oppLo, oppHi, 10) & emptyLo & NOT_COL78_LO)
+                | (downHi(ownHi, 20) & downHi(oppHi, 10) & emptyHi & NOT_COL78_HI)
+                | (downLo(ownLo, ownHi, 16) & downLo(oppLo, oppHi, 8) & emptyLo & NOT_COL01_LO)
+                | (downHi(ownHi, 16) & downHi(oppHi, 8) & emptyHi & NOT_COL01_HI)) != 0;
+        }
+        return ((upLo(ownLo, 9) & emptyLo) | (upHi(ownLo, ownHi, 9) & emptyHi)) != 0
+            || ((upLo(ownLo, 20) & upLo(oppLo, 10) & emptyLo & NOT_COL01_LO)
+            | (upHi(ownLo, ownHi, 20) & upHi(oppLo, oppHi, 10) & emptyHi & NOT_COL01_HI)
+            | (upLo(ownLo, 16) & upLo(oppLo, 8) & emptyLo & NOT_COL78_LO)
+            | (upHi(ownLo, ownHi, 16) & upHi(oppLo, oppHi, 8) & emptyHi & NOT_COL78_HI)) != 0;
+    }
+
+    // True if the color can capture, then only captures are legal
+    public boolean hasCapture(boolean black) {
+        long ownLo = black ? blackLo : whiteLo, ownHi = black ? blackHi : whiteHi;
+        long oppLo = black ? whiteLo : blackLo, oppHi = black ? whiteHi : blackHi;
+        long emptyLo = LO_MASK & ~(ownLo | oppLo), emptyHi = HI_MASK & ~(ownHi | oppHi);
+        if (black) {
+            return ((downLo(ownLo, ownHi, 20) & downLo(oppLo, oppHi, 10) & emptyLo & NOT_COL78_LO)
+                | (downHi(ownHi, 20) & downHi(oppHi, 10) & emptyHi & NOT_COL78_HI)
+                | (downLo(ownLo, ownHi, 16) & downLo(oppLo, oppHi, 8) & emptyLo & NOT_COL01_LO)
+                | (downHi(ownHi, 16) & downHi(oppHi, 8) & emptyHi & NOT_COL01_HI)) != 0;
+        }
+        return ((upLo(ownLo, 20) & upLo(oppLo, 10) & emptyLo & NOT_COL01_LO)
+            | (upHi(ownLo, ownHi, 20) & upHi(oppLo, oppHi, 10) & emptyHi & NOT_COL01_HI)
+            | (upLo(ownLo, 16) & upLo(oppLo, 8) & emptyLo & NOT_COL78_LO)
+            | (upHi(ownLo, ownHi, 16) & upHi(oppLo, oppHi, 8) & emptyHi & NOT_COL78_HI)) != 0;
+    }
+
+    /**
+     * True if the packed move is legal for the color, without generating the moves. Meant for moves
+     * from the transposition table, which may have been stored for another position.
+     */
+    public boolean isLegal(int move, boolean black) {
+        int from = Move.from(move), to = Move.to(move);
+        if (from >= SQUARES || to >= SQUARES || pieceAt(from) != (black ? 2 : 1) || pieceAt(to) != 0) {
+            return false;
+        }
+        int rows = to / SIZE - from / SIZE, columns = to % SIZE - from % SIZE;
+        int forward = black ? -1 : 1;
+        if (Move.isAttack(move)) {
+            return rows == 2 * forward && Math.abs(columns) == 2 && pieceAt((from + to) >> 1) == (black ? 1 : 2);
+        }
+        return ((rows == forward && columns == 0) || (rows == 0 && Math.abs(columns) == 1)) && !hasCapture(black);
+    }
+
+    // Sum of row indices of all stones in the set, used for the advancement term
+    static int rowSum(long lo, long hi) {
+        int sum = 0;
+        for (int row = 1; row < 7; row++) {
+            sum += row * Long.bitCount(lo & ROW_LO[row]);
+        }
+        return sum + 7 * Long.bitCount(hi & ROW_HI[7]) + 8 * Long.bitCount(hi & ROW_HI[8]);
+    }
+
+    static int count(long lo, long hi) {
+        return Long.bitCount(lo) + Long.bitCount(hi);
+    }
+}
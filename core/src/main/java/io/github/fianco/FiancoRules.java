@@ -0,0 +1,241 @@
+package io.github.fianco;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rules of Fianco on the 9x9 int board (0 = empty, 1 = white, 2 = black), without any libGDX dependency.
+ * White moves up towards row 8, black moves down towards row 0, captures are diagonal jumps and are mandatory.
+ */
+public class FiancoRules {
+    public static final int SIZE = 9;
+    public static final int EMPTY = 0;
+    public static final int WHITE = 1;
+    public static final int BLACK = 2;
+
+    private FiancoRules() {
+    }
+
+    public static int[][] initialBoard() {
+        int[][] board = new int[SIZE][SIZE];
+        setInitialStonePositions(board);
+        return board;
+    }
+
+    public static void setInitialStonePositions(int[][] board) {
+        // Set white stones in the first row
+        for (int col = 0; col < SIZE; col++) {
+            board[0][col] = WHITE;
+        }
+        board[1][1]=WHITE;board[1][7]=WHITE;board[2][2]=WHITE;board[2][6]=WHITE;board[3][3]=WHITE;board[3][5]=WHITE;
+
+        // Set black stones in the last row
+        for (int col = 0; col < SIZE; col++) {
+            board[8][col] = BLACK;
+        }
+        board[7][1]=BLACK;board[7][7]=BLACK;board[6][2]=BLACK;board[6][6]=BLACK;board[5][3]=BLACK;board[5][5]=BLACK;
+    }
+
+    // Capture moves for the stone on (row, col) if it belongs to the given color
+    public static List<Move> getCaptures(int[][] board, boolean black, int row, int col) {
+        MoveList captures = new MoveList();
+        addCaptures(board, black, row, col, captures);
+        return toMoves(captures);
+    }
+
+    private static void addCaptures(int[][] board, boolean black, int row, int col, MoveList captures) {
+        int stone = black ? BLACK : WHITE;
+        int opponent = black ? WHITE : BLACK;
+        if (board[row][col] != stone) {
+            return;
+        }
+        int dir = black ? -1 : 1; // black jumps down, white jumps up
+        int overRow = row + dir, toRow = row + 2 * dir;
+        if (toRow < 0 || toRow >= SIZE) {
+            return;
+        }
+        int from = row * SIZE + col;
+        // Diagonally left
+        if (col > 1 && board[overRow][col - 1] == opponent && board[toRow][col - 2] == EMPTY) {
+            captures.add(Move.pack(from, toRow * SIZE + col - 2, true));
+        }
+        // Diagonally right
+        if (col < SIZE - 2 && board[overRow][col + 1] == opponent && board[toRow][col + 2] == EMPTY) {
+            captures.add(Move.pack(from, toRow * SIZE + col + 2, true));
+        }
+    }
+
+    private static boolean canCapture(int[][] board, boolean black, int row, int col) {
+        int opponent = black ? WHITE : BLACK;
+        int dir = black ? -1 : 1;
+        int overRow = row + dir, toRow = row + 2 * dir;
+        if (toRow < 0 || toRow >= SIZE) {
+            return false;
+        }
+        return (col > 1 && board[overRow][col - 1] == opponent && board[toRow][col - 2] == EMPTY)
+            || (col < SIZE - 2 && board[overRow][col + 1] == opponent && board[toRow][col + 2] == EMPTY);
+    }
+
+    // Forward, left and right moves onto empty cells
+    private static void addQuietMoves(int[][] board, boolean black, int row, int col, MoveList moves) {
+        int from = row * SIZE + col;
+        int forward = black ? row - 1 : row + 1;
+        if (forward >= 0 && forward < SIZE && board[forward][col] == EMPTY)
+            moves.add(Move.pack(from, forward * SIZE + col, false));
+        if (col > 0 && board[row][col - 1] == EMPTY)
+            moves.add(Move.pack(from, from - 1, false)); // Left
+        if (col < SIZE - 1 && board[row][col + 1] == EMPTY)
+            moves.add(Move.pack(from, from + 1, false)); // Right
+    }
+
+    /**
+     * All legal moves of a color. If any capture is available only the captures are returned.
+     * Stones closest to their goal row are generated first.
+     */
+    public static List<Move> getLegalMoves(int[][] board, boolean black) {
+        MoveList moves = new MoveList();
+        generateMoves(board, black, moves);
+        return toMoves(moves);
+    }
+
+    // Same as getLegalMoves but writes packed moves into a reusable list
+    public static void generateMoves(int[][] board, boolean black, MoveList moves) {
+        moves.clear();
+        int stone = black ? BLACK : WHITE;
+        boolean capturing = false;
+        for (int i = 0; i < SIZE; i++) {
+            int row = black ? i : SIZE - 1 - i;
+            for (int col = 0; col < SIZE; col++) {
+                if (board[row][col] != stone)
+                    continue;
+                if (canCapture(board, black, row, col)) {
+                    if (!capturing) {
+                        moves.clear(); // drop the quiet moves found so far
+                        capturing = true;
+                    }
+                    addCaptures(board, black, row, col, moves);
+                } else if (!capturing) {
+                    addQuietMoves(board, black, row, col, moves);
+                }
+            }
+        }
+    }
+
+    private static List<Move> toMoves(MoveList packed) {
+        List<Move> moves = new ArrayList<>(packed.size());
+        for (int i = 0; i < packed.size(); i++) {
+            moves.add(Move.unpack(packed.get(i)));
+        }
+        return moves;
+    }
+
+    public static boolean hasLegalMove(int[][] board, boolean black) {
+        int stone = black ? BLACK : WHITE;
+        int forwardStep = black ? -1 : 1;
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                if (board[row][col] != stone)
+                    continue;
+                int forward = row + forwardStep;
+                if ((forward >= 0 && forward < SIZE && board[forward][col] == EMPTY)
+                    || (col > 0 && board[row][col - 1] == EMPTY)
+                    || (col < SIZE - 1 && board[row][col + 1] == EMPTY))
+                    return true;
+                // A stone that cannot step may still be able to jump
+                if (canCapture(board, black, row, col))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    public static void makeMove(int[][] board, Move move) {
+        if (move.isAttackMove) {
+            board[(move.startRow + move.endRow) / 2][(move.startCol + move.endCol) / 2] = EMPTY;
+        }
+        board[move.endRow][move.endCol] = board[move.startRow][move.startCol];
+        board[move.startRow][move.startCol] = EMPTY;
+    }
+
+    public static void makeMove(int[][] board, int move) {
+        int from = Move.from(move), to = Move.to(move);
+        if (Move.isAttack(move)) {
+            int over = (from + to) >> 1;
+            board[over / SIZE][over % SIZE] = EMPTY;
+        }
+        board[to / SIZE][to % SIZE] = board[from / SIZE][from % SIZE];
+        board[from / SIZE][from % SIZE] = EMPTY;
+    }
+
+    public static void undoMove(int[][] board, int move) {
+        int from = Move.from(move), to = Move.to(move);
+        int stone = board[to / SIZE][to % SIZE];
+        if (Move.isAttack(move)) {
+            int over = (from + to) >> 1;
+            board[over / SIZE][over % SIZE] = stone == WHITE ? BLACK : WHITE;
+        }
+        board[from / SIZE][from % SIZE] = stone;
+        board[to / SIZE][to % SIZE] = EMPTY;
+    }
+
+    public static void undoMove(int[][] board, Move move) {
+        int stone = board[move.endRow][move.endCol];
+        if (move.isAttackMove) {
+            board[(move.startRow + move.endRow) / 2][(move.startCol + move.endCol) / 2] = stone == WHITE ? BLACK : WHITE;
+        }
+        board[move.startRow][move.startCol] = stone;
+        board[move.endRow][move.endCol] = EMPTY;
+    }
+
+    // Play the move on a copy of the board
+    public static int[][] applyMove(int[][] board, Move move) {
+        int[][] newBoard = copyBoard(board);
+        makeMove(newBoard, move);
+        return newBoard;
+    }
+
+    public static int[][] copyBoard(int[][] board) {
+        int[][] copy = new int[SIZE][SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            System.arraycopy(board[i], 0, copy[i], 0, SIZE);
+        }
+        return copy;
+    }
+
+    /**
+     * @return WHITE or BLACK if that color has won, EMPTY if the game goes on.
+     * A stone on the far row or an opponent without stones wins; the side to move loses if it is stuck.
+     * Only the goal rows are always scanned, the other scans stop at the first stone or move they find.
+     */
+    public static int getWinner(int[][] board, boolean blackToMove) {
+        for (int col = 0; col < SIZE; col++) {
+            if (board[0][col] == BLACK)
+                return BLACK;
+        }
+        for (int col = 0; col < SIZE; col++) {
+            if (board[SIZE - 1][col] == WHITE)
+                return WHITE;
+        }
+        // A side to move without stones is stuck as well, so only the opponent has to be looked for
+        // (an empty board still counts as a black win)
+        if (!hasStone(board, blackToMove ? WHITE : BLACK))
+            return blackToMove || !hasStone(board, WHITE) ? BLACK : WHITE;
+        if (!hasLegalMove(board, blackToMove))
+            return blackToMove ? WHITE : BLACK;
+        return EMPTY;
+    }
+
+    private static boolean hasStone(int[][] board, int stone) {
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                if (board[row][col] == stone)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean isGameOver(int[][] board, boolean blackToMove) {
+        return getWinner(board, blackToMove) != EMPTY;
+    }
+}
@@ -1,37 +1,51 @@
 package io.github.fianco;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class IterativeDeepening extends Bot {
+    private static final int CHECK_INTERVAL = 1024; // nodes between two looks at the clock, a power of two
+
     private int depthLimit; // Depth limit for alpha-beta pruning
+    private MoveList[] moveLists;
+    private PrincipalVariation pv;
+    private final MoveOrdering ordering; // killers and history, kept from move to move
+    private int rootDepth; // depth of the current iteration, ply = rootDepth - depth
     private final long timeConstraint;
+    private final boolean pvs; // principal variation search instead of plain alpha-beta
+    private long deadline; // the running iteration is given up at this time
+    private long nodes;
+    private boolean aborted;
 
     public IterativeDeepening(boolean isBlack, int[][] board, int depthLimit, long timeConstraint) {
+        this(isBlack, board, depthLimit, timeConstraint, true);
+    }
+
+    public IterativeDeepening(boolean isBlack, int[][] board, int depthLimit, long timeConstraint, boolean pvs) {
         super(isBlack, board);
         this.depthLimit = depthLimit; // Set the maximum depth for the search
+        this.ordering = new MoveOrdering(depthLimit);
         this.timeConstraint = timeConstraint;
+        this.pvs = pvs;
     }
 
-    // Main method for the bot to make its move
-    public void calculate(BoardScreen boardScreen, int[][] board) {
+    // Main method for the bot to pick its move
+    public Move findMove(int[][] board) {
         BotLogic botLogic = new BotLogic(isBlack);
-        Move bestMove = iterativeDeepening(boardScreen, board, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE, 1, timeConstraint, botLogic);
-        System.out.println("best move " + bestMove.startRow + " " + bestMove.startCol + " to " + bestMove.endRow + " " + bestMove.endCol + " " + bestMove.evaluation);
+        moveLists = MoveList.forPlies(depthLimit + 1);
+        pv = new PrincipalVariation(depthLimit);
+        ordering.newSearch();
+        Move bestMove = iterativeDeepening(new FiancoPosition(board), depthLimit, -Integer.MAX_VALUE, Integer.MAX_VALUE, 1, timeConstraint, botLogic);
 
         if (bestMove != null) {
-            // Execute the move
-            if (bestMove.isAttackMove) {
-                boardScreen.botAttackStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            } else {
-                boardScreen.botMoveStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            }
+            System.out.println("best move " + bestMove.startRow + " " + bestMove.startCol + " to " + bestMove.endRow + " " + bestMove.endCol + " " + bestMove.evaluation + (aborted ? "" : " pv " + pv));
         }
+        return bestMove;
     }
-    private Move iterativeDeepening(BoardScreen boardScreen, int[][] board, int maxDepth, int alpha, int beta, int max, long timeLimitMillis, BotLogic botLogic) {
+    private Move iterativeDeepening(FiancoPosition pos, int maxDepth, int alpha, int beta, int max, long timeLimitMillis, BotLogic botLogic) {
         Move bestMove = null;
         // Capture the start time of the search
         long startTime = System.currentTimeMillis();
+        aborted = false;
 
         // Iteratively increase the depth from 1 up to the maximum depth limit
         for (int currentDepth = 1; currentDepth <= maxDepth; currentDepth+=1) {
@@ -45,23 +59,23 @@ public class IterativeDeepening extends Bot {
             System.out.println("Searching at depth: " + currentDepth);
 
             // If you only have one move and it's an attack move you should not look further
-            List<Move> moves = botLogic.getAllPossibleMoves(board,boardScreen, max == 1);
-            moves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
+            List<Move> moves = botLogic.getAllPossibleMoves(pos, max == 1); // captures are already forced
 
-            if(currentDepth==1 && moves.size() == 1){
-                bestMove = moves.get(0);
-                break;
-            }
-            else if (moves.get(0).isAttackMove) {
-                moves.removeIf(move -> !move.isAttackMove);
-            }
-            if(currentDepth==1 && moves.size()==1){
-                bestMove = moves.get(0);
+            if(currentDepth==1 && moves.size() <= 1){
+                bestMove = moves.isEmpty() ? null : moves.get(0);
                 break;
             }
 
-            // Perform a negamax search with the current depth limit
-            Move currentBestMove = negamax(boardScreen, board, currentDepth, alpha, beta, max, botLogic);
+            // Perform a negamax search with the current depth limit. It is stopped when the time runs
+            // out, unless there is no move to fall back on yet.
+            rootDepth = currentDepth;
+            deadline = bestMove == null ? Long.MAX_VALUE : startTime + timeLimitMillis;
+            int score = negamax(pos, currentDepth, alpha, beta, max, botLogic);
+            if (aborted) {
+                System.out.println("Time limit reached. Stopping search at depth: " + (currentDepth - 1));
+                break; // the unfinished iteration is thrown away
+            }
+            Move currentBestMove = pv.toMove(score);
 
             if (currentBestMove != null) {
                 bestMove = currentBestMove; // Update the best move found so far
@@ -76,56 +90,80 @@ public class IterativeDeepening extends Bot {
         return bestMove;
     }
 
-    private Move negamax(BoardScreen boardScreen, int[][] board, int depth, int alpha, int beta, int max, BotLogic botLogic) {
-        if (depth == 0 || botLogic.isGameOver(board,boardScreen,max)) {
+    // Returns the score for the side to move, the best line is left in pv
+    private int negamax(FiancoPosition pos, int depth, int alpha, int beta, int max, BotLogic botLogic) {
+        int ply = rootDepth - depth;
+        pv.clear(ply);
+        if ((++nodes & (CHECK_INTERVAL - 1)) == 0 && System.currentTimeMillis() >= deadline) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (depth == 0 || botLogic.isGameOver(pos, max)) {
             int evaluation;
             if((botLogic.didBlackWin() && isBlack) || (botLogic.didWhiteWin() && !isBlack)){
                 evaluation = 10000;
             } else if ((botLogic.didBlackWin() && !isBlack) || (botLogic.didWhiteWin() && isBlack)) {
                 evaluation = -10000;
             }else {
-                evaluation = botLogic.evaluateBoard(board); // Evaluate the board at the leaf node
+                evaluation = botLogic.evaluateBoard(pos); // Evaluate the board at the leaf node
             }
             botLogic.setWinsToFalse();
 
-            return new Move(-1,-1,-1,-1,false,max * evaluation); // Return the evaluation wrapped in a Move object
+            return max * evaluation;
         }
 
-        List<Move> moves = botLogic.getAllPossibleMoves(board, boardScreen, max == 1); // Color == 1 for current player, -1 for opponent
-        moves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
+        MoveList moves = moveLists[depth]; // one list per remaining depth, reused by every node at that depth
+        botLogic.getAllPossibleMoves(pos, max == 1, moves); // Color == 1 for current player, -1 for opponent
+        boolean black = (max == 1) == isBlack;
+        ordering.order(moves, ply, black);
 
-        if (moves.get(0).isAttackMove) {
-            moves.removeIf(move -> !move.isAttackMove);
-        }
-
-        Move bestMove = null;
         int maxEval = Integer.MIN_VALUE;
 
-        for (Move move : moves) {
-            botLogic.makeMove(board, move, isBlack && max == 1 || !isBlack && max == -1); // if true move is black, else white
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            botLogic.makeMove(pos, move);
 
-            Move resultMove = negamax(boardScreen, board, depth - 1, -beta, -alpha, -max, botLogic); // Negate alpha, beta, and color
+            int score = search(pos, depth - 1, alpha, beta, max, botLogic, i == 0);
+            if (aborted) {
+                botLogic.undoMove(pos, move);
+                return 0;
+            }
 
-            if (-resultMove.evaluation > maxEval) {
-                maxEval = -resultMove.evaluation;
-                bestMove = move.clone();
-                bestMove.evaluation = maxEval;
+            if (score > maxEval) {
+                maxEval = score;
+                pv.update(ply, move);
             }
 
             // Undo the move
-            botLogic.undoMove(board, move, isBlack && max == 1 || !isBlack && max == -1);
+            botLogic.undoMove(pos, move);
 
             alpha = Math.max(alpha, maxEval);
             if (alpha >= beta) {
+                ordering.cutoff(move, ply, depth, black);
                 break; // Beta cut-off, no need to explore further if a winning move is found
             }
         }
 
-        if (bestMove == null) {
-            bestMove = moves.get(0); // Fallback in case no best move was found
+        if (maxEval == Integer.MIN_VALUE) {
+            pv.set(ply, moves.get(0)); // Fallback in case no best move was found
+            return 0;
         }
 
-        return bestMove;
+        return maxEval;
+    }
+    // PVS: the first move gets the full window, the others a null window that only tells whether they
+    // beat alpha, and they are searched again with the full window if they do
+    private int search(FiancoPosition pos, int depth, int alpha, int beta, int max, BotLogic botLogic, boolean first) {
+        if (!pvs || first) {
+            return -negamax(pos, depth, -beta, -alpha, -max, botLogic); // Negate alpha, beta, and color
+        }
+        int score = -negamax(pos, depth, -alpha - 1, -alpha, -max, botLogic);
+        if (score > alpha && score < beta && !aborted) {
+            score = -negamax(pos, depth, -beta, -alpha, -max, botLogic);
+        }
+        return score;
     }
     public void changeSide(){
         isBlack = !isBlack;
@@ -1,53 +1,64 @@
 package io.github.fianco;
 
-import java.util.concurrent.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
-
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Monte Carlo search over evaluation functions: every function plays iterations * numThreads
+ * simulations in which both sides pick the move it likes best, and the function that wins the most
+ * decides the move. The simulations are epsilon-greedy, with random tie-breaks, so no two of them
+ * play the same game. They are independent leaves for a BatchEvaluator, they only read their
+ * arguments and use the random generator of their thread, so they can run on any thread.
+ */
 public class MCS extends Bot {
-    private Random random;
-    private List<Move> possibleMoves;
-    private List<Move> possibleAttack;
+    private static final int MAX_PLIES = 300; // greedy sideways moves can repeat forever
+    private static final double EPSILON = 0.1; // share of simulation moves played at random
     private int iterations;  // Number of iterations to run MCS
     private int numThreads;  // Number of threads for parallelism
-    private boolean blackWins = false;
-    private boolean whiteWins = false;
+    private final BatchEvaluator evaluator;
 
     public MCS(boolean isBlack, int[][] board, int iterations, int numThreads) {
         super(isBlack, board);
         this.iterations = iterations;
-        this.numThreads = numThreads;
-        random = new Random();
+        this.numThreads = Math.max(1, numThreads);
+        this.evaluator = new BatchEvaluator(this.numThreads, "MCS");
     }
 
-    public void calculate(BoardScreen boardScreen, int[][] board) {
+    public Move findMove(int[][] board) {
         BotLogic botLogic = new BotLogic(isBlack);
-        possibleAttack = new ArrayList<>();
 
         // Run MCS to evaluate different evaluation functions
         List<EvaluationFunction> evalFunctions = getEvaluationFunctions();  // Define multiple evaluation functions
-        EvaluationFunction bestEvalFunction = runMCS(boardScreen, board, botLogic, evalFunctions);
+        EvaluationFunction bestEvalFunction = runMCS(board, isBlack, evalFunctions);
 
         System.out.println("Best Evaluation Function: " + bestEvalFunction.getName());
 
-        // Optionally, after finding the best evaluation function, use it for your move decision
+        // After finding the best evaluation function, use it for the move decision
         Move bestMove = botLogic.getBestMoveUsingEvaluation(board, bestEvalFunction);
-        System.out.println("Best move according to " + bestEvalFunction.getName() + ": " + bestMove.startRow + " " + bestMove.startCol);
+        if (bestMove != null) {
+            System.out.println("Best move according to " + bestEvalFunction.getName() + ": " + bestMove.startRow + " " + bestMove.startCol);
+        }
+        return bestMove;
     }
 
-    private EvaluationFunction runMCS(BoardScreen boardScreen, int[][] board, BotLogic botLogic, List<EvaluationFunction> evalFunctions) {
-        int bestPerformance = Integer.MIN_VALUE;
+    private EvaluationFunction runMCS(int[][] board, boolean botIsBlack, List<EvaluationFunction> evalFunctions) {
+        long bestPerformance = Long.MIN_VALUE;
         EvaluationFunction bestEvalFunction = null;
 
+        // Queue the simulations of every function first, so the workers never run out of leaves
+        int[][] start = FiancoRules.copyBoard(board);
+        List<BatchEvaluator.Batch> batches = new ArrayList<>();
         for (EvaluationFunction evalFunc : evalFunctions) {
-            int totalPerformance = 0;
+            BatchEvaluator.Batch batch = new BatchEvaluator.Batch();
+            evaluator.submit(batch, () -> simulation(start, botIsBlack, evalFunc), iterations * numThreads);
+            batches.add(batch);
+        }
 
-            for (int i = 0; i < iterations; i++) {
-                System.out.println(i);
-                int result = runParallelSimulations(boardScreen, board, botLogic, evalFunc);  // Pass evalFunc
-                totalPerformance += result;
-            }
+        for (int i = 0; i < evalFunctions.size(); i++) {
+            EvaluationFunction evalFunc = evalFunctions.get(i);
+            long totalPerformance = evaluator.await(batches.get(i));
 
             System.out.println("Performance of " + evalFunc.getName() + ": " + totalPerformance);
 
@@ -60,69 +71,46 @@ public class MCS extends Bot {
         return bestEvalFunction;  // Return the best-performing evaluation function
     }
 
-    private int runParallelSimulations(BoardScreen boardScreen, int[][] board, BotLogic botLogic, EvaluationFunction evalFunc) {
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-        List<Future<Integer>> futures = new ArrayList<>();
-
-        // Submit simulations to run in parallel
-        for (int i = 0; i < numThreads; i++) {
-            Future<Integer> future = executor.submit(() -> simulation(boardScreen, board, botLogic, evalFunc));  // Pass evalFunc
-            futures.add(future);
-        }
-
-        int totalResult = 0;
-        // Collect results
-        for (Future<Integer> future : futures) {
-            try {
-                totalResult += future.get();  // Get the result of the simulation
-            } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
-            }
-        }
-
-        executor.shutdown();
-        return totalResult;
-    }
-
-    private int simulation(BoardScreen boardScreen, int[][] board, BotLogic botLogic, EvaluationFunction evalFunc) {
-        int[][] simulationBoard = deepCopyBoard(board);
-        blackWins = false;
-        whiteWins = false;
-        boolean current = isBlack;
-        boolean max = true;
-
-        while (!isGameOver(simulationBoard)) {
-            List<Move> possibleMoves = botLogic.getAllPossibleMoves(simulationBoard, boardScreen, max);
-            if (possibleMoves.isEmpty()) {
-                break;
+    // Plays the game out with the evaluation function choosing for both sides, 1 if the bot wins.
+    // Only local state is changed, the side to move is not kept in the bot's fields.
+    private int simulation(int[][] board, boolean botIsBlack, EvaluationFunction evalFunc) {
+        int[][] simulationBoard = FiancoRules.copyBoard(board);
+        Random random = ThreadLocalRandom.current();
+        boolean blackToMove = botIsBlack;
+        int winner;
+
+        for (int ply = 0; (winner = FiancoRules.getWinner(simulationBoard, blackToMove)) == FiancoRules.EMPTY; ply++) {
+            if (ply == MAX_PLIES) {
+                return 0;
             }
-            possibleMoves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
-            if(possibleMoves.get(0).isAttackMove){
-                // remove all the moves with isAttackMove false
-                possibleMoves.removeIf(move -> !move.isAttackMove);
+            List<Move> possibleMoves = FiancoRules.getLegalMoves(simulationBoard, blackToMove); // captures are already forced
+
+            // Pick the best move for the side to move according to the evaluation function, a random
+            // one among equals, and now and then any move
+            Move bestMove = null;
+            if (random.nextDouble() < EPSILON) {
+                bestMove = possibleMoves.get(random.nextInt(possibleMoves.size()));
+            } else {
+                double bestScore = Double.NEGATIVE_INFINITY;
+                int ties = 0;
+                for (Move move : possibleMoves) {
+                    double score = evalFunc.evaluate(FiancoRules.applyMove(simulationBoard, move), blackToMove);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestMove = move;
+                        ties = 1;
+                    } else if (score == bestScore && random.nextInt(++ties) == 0) {
+                        bestMove = move;
+                    }
+                }
             }
-
-            int [][] finalsimulationBoard = simulationBoard;
-            possibleMoves.sort((Move m1, Move m2) -> Double.compare(evalFunc.evaluate(botLogic.makeMoveInt(finalsimulationBoard, m2,isBlack)), evalFunc.evaluate(botLogic.makeMoveInt(finalsimulationBoard, m1,isBlack))));
-
-            // Pick the best move according to the evaluation function
-            Move bestMove = possibleMoves.get(0);
-            simulationBoard = botLogic.makeMoveInt(simulationBoard, bestMove, isBlack);
-            isBlack = !isBlack;
-            max = !max;
+            simulationBoard = FiancoRules.applyMove(simulationBoard, bestMove);
+            blackToMove = !blackToMove;
         }
-        isBlack = current;
         // Return the result of the simulation
-        return getWinner() ? 1 : 0;
+        return (winner == FiancoRules.BLACK) == botIsBlack ? 1 : 0;
     }
 
-    private int[][] deepCopyBoard(int[][] originalBoard) {
-        int[][] copy = new int[originalBoard.length][originalBoard[0].length];
-        for (int i = 0; i < originalBoard.length; i++) {
-            System.arraycopy(originalBoard[i], 0, copy[i], 0, originalBoard[i].length);
-        }
-        return copy;
-    }
     private List<EvaluationFunction> getEvaluationFunctions() {
         List<EvaluationFunction> evalFunctions = new ArrayList<>();
         evalFunctions.add(new SimpleEvaluationFunction());
@@ -130,77 +118,29 @@ public class MCS extends Bot {
         // Add more evaluation functions here
         return evalFunctions;
     }
-    private boolean isGameOver(int[][] board) {
-        this.board = board;
-
-        // Check if a black stone has reached row 0 (top)
-        for (int i = 0; i < board[0].length; i++) {
-            if (board[0][i] == 2) {
-                blackWins = true;
-                return true;
-            }
-        }
-
-        // Check if a white stone has reached row 8 (bottom)
-        for (int i = 0; i < board[8].length; i++) {
-            if (board[8][i] == 1) {
-                whiteWins = true;
-                return true;
-            }
-        }
-
-        // Check if still are any white or black stones
-        int countW = 0;
-        int countB = 0;
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board.length; j++) {
-                if (board[i][j] == 1)
-                    countW++;
-                else if(board[i][j] == 2)
-                    countB++;
-                else if(countW!=0 && countB!=0)
-                    break;
-            }
-        }
-        if(countW==0){
-            blackWins = true;
-            return true;
-        } else if (countB==0) {
-            whiteWins = true;
-            return true;
-        }
-        return false;
-    }
-    private boolean getWinner(){
-        if(isBlack && blackWins || !isBlack && whiteWins){
-            return true;
-        }else{
-            return false;
-        }
-    }
     // Evaluation Function Interface
     interface EvaluationFunction {
-        double evaluate(int[][] board);
+        double evaluate(int[][] board, boolean black); // from the view of black or white
         String getName();
     }
 
     // Example: Simple Evaluation Function
     public class SimpleEvaluationFunction implements EvaluationFunction {
-        public double evaluate(int[][] board) {
+        public double evaluate(int[][] board, boolean black) {
             int score = 0;
 
             int pieceValue = 10;
 
             for (int row = 0; row < board.length; row++) {
                 for (int col = 0; col < board[row].length; col++) {
-                    if (isBotPiece(row, col, board)) {
-                        if(isBlack)
+                    if (isBotPiece(row, col, board, black)) {
+                        if(black)
                             score += pieceValue; // Example add: + (7 - row);
                         else
                             score += pieceValue;
 
-                    } else if (isOpponentPiece(row, col, board)) {
-                        if(!isBlack)
+                    } else if (isOpponentPiece(row, col, board, black)) {
+                        if(!black)
                             score -= (pieceValue); // Example add: + row;
                         else
                             score -= (pieceValue);
@@ -217,7 +157,7 @@ public class MCS extends Bot {
 
     // Example: Advanced Evaluation Function
     public class AdvancedEvaluationFunction implements EvaluationFunction {
-        public double evaluate(int[][] board) {
+        public double evaluate(int[][] board, boolean black) {
             int score = 0;
 
             int distanceWeight = 1;
@@ -225,14 +165,14 @@ public class MCS extends Bot {
 
             for (int row = 0; row < board.length; row++) {
                 for (int col = 0; col < board[row].length; col++) {
-                    if (isBotPiece(row, col, board)) {
-                        if(isBlack)
+                    if (isBotPiece(row, col, board, black)) {
+                        if(black)
                             score += pieceValue + distanceWeight * (7 - row); // Example add: + (7 - row);
                         else
                             score += pieceValue + distanceWeight * row;
 
-                    } else if (isOpponentPiece(row, col, board)) {
-                        if(!isBlack)
+                    } else if (isOpponentPiece(row, col, board, black)) {
+                        if(!black)
                             score -= (pieceValue + distanceWeight * (7 - row)); // Example add: + row;
                         else
                             score -= (pieceValue + distanceWeight * row);
@@ -247,13 +187,13 @@ public class MCS extends Bot {
         }
     }
     // Check if the stone belongs to the bot
-    private boolean isBotPiece(int row, int col, int[][]board) {
-        return (isBlack && board[row][col] == 2) || (!isBlack && board[row][col] == 1);
+    private static boolean isBotPiece(int row, int col, int[][]board, boolean black) {
+        return (black && board[row][col] == 2) || (!black && board[row][col] == 1);
     }
 
     // Check if the stone belongs to the opponent
-    private boolean isOpponentPiece(int row, int col, int[][]board) {
-        return (!isBlack && board[row][col] == 2) || (isBlack && board[row][col] == 1);
+    private static boolean isOpponentPiece(int row, int col, int[][]board, boolean black) {
+        return (!black && board[row][col] == 2) || (black && board[row][col] == 1);
     }
     public void changeSide(){
         isBlack = !isBlack;
@@ -4,281 +4,279 @@ import java.util.concurrent.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Tree-parallel Monte Carlo tree search. The worker threads live as long as the bot and every one of
+ * them runs complete iterations (selection, expansion, playout, backpropagation) on the shared tree.
+ * Visits are counted on the way down, so a node another thread is still working on looks like a loss
+ * (virtual loss) and the threads spread over different branches.
+ *
+ * The tree is an MctsTree of fixed size that is reused for every move. Each thread replays the moves
+ * from the root on its own FiancoPosition, so no boards are copied. When the tree is full the leaves
+ * are not expanded anymore but still get playouts.
+ *
+ * The part of the tree below the new position (our move and the opponent's reply) is kept from one
+ * move to the next, so its statistics are not lost. It is copied into a second tree and the rest is
+ * dropped.
+ *
+ * It is also an MCTS-Solver: won and lost games are proven in the tree (see MctsTree) and the proofs
+ * are passed up, selection skips proven losses and the search stops once the root is proven.
+ *
+ * With more than one playout per leaf the leaf of an iteration is played out that many times and the
+ * leaf's path gets all their visits and wins.
+ *
+ * With a RAVE equivalence above 0 every iteration also updates the all-moves-as-first statistics of
+ * the siblings along its path (see MctsTree) and selection blends them in, which gives the many moves
+ * of a Fianco position a useful value after a few visits.
+ *
+ * The search stops when the iterations are used up or the time constraint has passed, whatever comes
+ * first, and plays the most visited root move at that moment.
+ */
 public class MTCS extends Bot {
-    private Random random;
-    private List<Move> possibleMoves;
-    private List<Move> possibleAttack;
-    private int iterations;  // Number of iterations to run MCTS
-    private boolean blackWins = false;
-    private boolean whiteWins = false;
+    private static final int DEFAULT_NODES = 1 << 21; // about 72 MB per tree, there are two
+    private static final int CLOCK_CHECK_MASK = 63; // every worker reads the clock once in 64 iterations
+
+    // Shared by every instance, so a bot that is replaced leaves no threads behind: idle workers end
+    // after a minute
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "MTCS worker");
+        thread.setDaemon(true); // do not keep the application alive
+        return thread;
+    });
+
+    private int iterations;  // Number of iterations to run MCTS, over all threads
     private int numThreads;  // Number of threads for parallelism
+    private final long timeConstraint; // milliseconds per move
+    private final Playout playout = new Playout(true);
+    private final int playoutsPerLeaf;
+    private final int raveEquivalence; // visits at which the UCT and the AMAF value weigh the same, 0 for plain UCT
+    private MctsTree tree;
+    private MctsTree spare; // receives the subtree that is kept for the next move
+    private FiancoPosition lastRoot; // root of the tree, null before the first search
+    private boolean lastBlackToMove;
 
     public MTCS(boolean isBlack, int[][] board, int iterations, int numThreads) {
+        this(isBlack, board, iterations, numThreads, DEFAULT_NODES, Long.MAX_VALUE, 1, 0);
+    }
+
+    // With iterations = Integer.MAX_VALUE only the time constraint (milliseconds per move) limits the search
+    public MTCS(boolean isBlack, int[][] board, int iterations, int numThreads, int maxNodes, long timeConstraint) {
+        this(isBlack, board, iterations, numThreads, maxNodes, timeConstraint, 1, 0);
+    }
+
+    public MTCS(boolean isBlack, int[][] board, int iterations, int numThreads, int maxNodes, long timeConstraint, int playoutsPerLeaf) {
+        this(isBlack, board, iterations, numThreads, maxNodes, timeConstraint, playoutsPerLeaf, 0);
+    }
+
+    public MTCS(boolean isBlack, int[][] board, int iterations, int numThreads, int maxNodes, long timeConstraint, int playoutsPerLeaf,
+                int raveEquivalence) {
         super(isBlack, board);
+        this.playoutsPerLeaf = Math.max(1, playoutsPerLeaf);
+        this.raveEquivalence = Math.max(0, raveEquivalence);
         this.iterations = iterations;
-        this.numThreads = numThreads;
-        random = new Random();
+        this.numThreads = Math.max(1, numThreads);
+        this.timeConstraint = timeConstraint;
+        this.tree = new MctsTree(maxNodes);
+        this.spare = new MctsTree(maxNodes);
     }
 
-    public void calculate(BoardScreen boardScreen, int[][] board) {
-        possibleAttack = new ArrayList<>();
-
+    public Move findMove(int[][] board) {
         // Run the MCTS to determine the best move
-        Move bestMove = runMCTS(boardScreen, board);
-        System.out.println(bestMove.startRow + " " + bestMove.startCol);
-
+        Move bestMove = runMCTS(board);
         if (bestMove != null) {
-            // Execute the best move
-            if (bestMove.isAttackMove()) {
-                boardScreen.botAttackStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            } else {
-                boardScreen.botMoveStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            }
+            System.out.println(bestMove.startRow + " " + bestMove.startCol);
         }
+        return bestMove;
     }
 
-    private Move runMCTS(BoardScreen boardScreen, int[][] board) {
-        Node rootNode = new Node(null, board, null, isBlack);
+    private Move runMCTS(int[][] board) {
+        List<Move> legalMoves = FiancoRules.getLegalMoves(board, isBlack);
+        if (legalMoves.isEmpty()) {
+            return null;
+        }
+        FiancoPosition rootPosition = new FiancoPosition(board);
+        boolean blackToMove = isBlack;
+        advanceRoot(rootPosition, blackToMove);
+        int reused = tree.visits(MctsTree.ROOT);
+        long startTime = System.nanoTime();
+        long deadline = timeConstraint >= Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : startTime + timeConstraint * 1_000_000;
 
-        // Run MCTS iterations
-        for (int i = 0; i < iterations; i++) {
-            Node selectedNode = selection(rootNode);
-            if (!selectedNode.isTerminal()) {
-                Node expandedNode = expansion(selectedNode, boardScreen);
-                if (expandedNode != null) {
-                    // Run the simulation in parallel
-                    runParallelSimulations(expandedNode, boardScreen);
-                }
-            } else {
-                backpropagation(selectedNode, selectedNode.getResult());
+        // Run MCTS iterations on all workers until the shared budget or the time is used up
+        AtomicInteger remaining = new AtomicInteger(iterations);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            futures.add(WORKERS.submit(() -> search(rootPosition, blackToMove, remaining, deadline)));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
             }
         }
 
-        // Choose the child with the highest visit count
-        return rootNode.getBestChild().move;
-    }
+        long elapsed = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+        int done = (tree.visits(MctsTree.ROOT) - reused) / playoutsPerLeaf;
+        System.out.println("MTCS " + done + " iterations in " + elapsed + " ms, " + done * 1000L / elapsed + " iterations/s, "
+            + (playoutsPerLeaf > 1 ? done * (long) playoutsPerLeaf * 1000L / elapsed + " playouts/s, " : "") + tree.size() + " nodes"
+            + (tree.proof(MctsTree.ROOT) == MctsTree.PROVEN_LOSS ? ", proven win" : tree.proof(MctsTree.ROOT) == MctsTree.PROVEN_WIN ? ", proven loss" : ""));
 
-    private Node selection(Node node) {
-        while (!node.isLeaf()) {
-            node = node.getBestUCTChild();
-        }
-        return node;
+        // Choose the child with the highest visit count
+        int bestChild = tree.getBestChild(MctsTree.ROOT);
+        return bestChild != MctsTree.NONE ? Move.unpack(tree.move(bestChild)) : legalMoves.get(0); // no children if the game is already over
     }
 
-    private Node expansion(Node node, BoardScreen boardScreen) {
-        List<Move> possibleMoves = getAllPossibleMoves(boardScreen, node.board, node.isBlackNode);
-        if (possibleMoves.isEmpty()) {
-            return null;  // No valid expansion possible
-        }
-
-        possibleMoves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
-        if (possibleMoves.get(0).isAttackMove) {
-            // remove all the moves with isAttackMove false
-            possibleMoves.removeIf(move -> !move.isAttackMove);
+    // Make the node of the new position the root if the old tree has it, otherwise start a new tree
+    private void advanceRoot(FiancoPosition rootPosition, boolean blackToMove) {
+        int node = lastRoot != null && lastBlackToMove == blackToMove ? findNode(rootPosition) : MctsTree.NONE;
+        if (node == MctsTree.NONE) {
+            tree.clear();
+        } else if (node != MctsTree.ROOT) {
+            spare.copySubtree(tree, node);
+            MctsTree old = tree;
+            tree = spare;
+            spare = old;
         }
-        for (Move move : possibleMoves) {
-            int[][] newBoard = makeMove(node.board, move, node.isBlackNode);  // Simulate the move
-            node.addChild(new Node(node, newBoard, move, !node.isBlackNode));
+        if (node != MctsTree.NONE) {
+            System.out.println("MTCS reused " + tree.visits(MctsTree.ROOT) / playoutsPerLeaf + " iterations, " + tree.size() + " nodes");
         }
-        return node.getRandomChild();
+        lastRoot = rootPosition;
+        lastBlackToMove = blackToMove;
     }
 
-    // This method runs simulations in parallel
-    private void runParallelSimulations(Node expandedNode, BoardScreen boardScreen) {
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-        List<Future<Integer>> futures = new ArrayList<>();
-
-        // Submit simulations to run in parallel
-        for (int i = 0; i < numThreads; i++) {
-            Future<Integer> future = executor.submit(() -> simulation(expandedNode, boardScreen));
-            futures.add(future);
+    // The root itself or one of its grandchildren (our move and the reply) with the same stones as target
+    private int findNode(FiancoPosition target) {
+        if (lastRoot.sameStones(target)) {
+            return MctsTree.ROOT;
         }
-
-        // Collect results and apply backpropagation
-        for (Future<Integer> future : futures) {
-            try {
-                int result = future.get();  // Get the result of the simulation
-                backpropagation(expandedNode, result);  // Run backpropagation after each simulation
-            } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
+        FiancoPosition pos = new FiancoPosition(lastRoot);
+        int children = tree.childCount(MctsTree.ROOT);
+        for (int child = tree.firstChild(MctsTree.ROOT); children-- > 0; child++) {
+            pos.makeMove(tree.move(child));
+            int replies = tree.childCount(child);
+            for (int reply = tree.firstChild(child); replies-- > 0; reply++) {
+                pos.makeMove(tree.move(reply));
+                boolean found = pos.sameStones(target);
+                pos.undoMove(tree.move(reply));
+                if (found) {
+                    return reply;
+                }
             }
+            pos.undoMove(tree.move(child));
         }
-
-        executor.shutdown();  // Shutdown the executor
+        return MctsTree.NONE;
     }
 
-    private int simulation(Node node, BoardScreen boardScreen) {
-        int[][] simulationBoard = deepCopyBoard(node.board);  // Make a copy of the board
-        boolean currentPlayerIsBot = node.isBlackNode;
-        blackWins = false;
-        whiteWins = false;
-        while (!isGameOver(simulationBoard)) {
-            List<Move> possibleMoves = getAllPossibleMoves(boardScreen, simulationBoard, currentPlayerIsBot);
-            if (possibleMoves.isEmpty()) {
+    private void search(FiancoPosition rootPosition, boolean rootBlackToMove, AtomicInteger remaining, long deadline) {
+        FiancoPosition pos = new FiancoPosition();
+        MoveList moves = new MoveList();
+        Random random = ThreadLocalRandom.current();
+        FiancoPosition leaf = playoutsPerLeaf > 1 ? new FiancoPosition() : null;
+        AmafMoves played = raveEquivalence > 0 ? new AmafMoves() : null;
+        int clockCheckMask = leaf != null ? 0 : CLOCK_CHECK_MASK; // several playouts are slow enough to check every time
+        for (int n = 0; tree.proof(MctsTree.ROOT) == MctsTree.UNPROVEN && remaining.getAndDecrement() > 0; n++) {
+            if ((n & clockCheckMask) == clockCheckMask && System.nanoTime() >= deadline) {
                 break;
             }
-            possibleMoves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
-            if (possibleMoves.get(0).isAttackMove) {
-                // remove all the moves with isAttackMove false
-                possibleMoves.removeIf(move -> !move.isAttackMove);
+            pos.copyFrom(rootPosition);
+            boolean blackToMove = rootBlackToMove;
+            if (played != null) {
+                played.clear();
             }
-            Move randomMove = possibleMoves.get(random.nextInt(possibleMoves.size()));
-            simulationBoard = makeMove(simulationBoard, randomMove, currentPlayerIsBot);
-            currentPlayerIsBot = !currentPlayerIsBot;  // Switch turns
-        }
 
-        // Return the result of the simulation (1 for win, 0 for loss, 0.5 for draw)
-        return getWinner() ? 1 : 0;
-    }
-
-    private void backpropagation(Node node, int result) {
-        while (node != null) {
-            node.visits++;
-            node.wins += result;
-            result = 1 - result;  // Flip the result as we go back up the tree
-            node = node.parent;
-        }
-    }
-
-    private List<Move> getAllPossibleMoves(BoardScreen boardScreen, int[][] currentboard, Boolean isBlackNode) {
-        List<Move> moves = new ArrayList<>();
+            // Selection, the visits are counted on the way down (virtual loss)
+            int node = MctsTree.ROOT;
+            tree.addVisit(node);
+            while (!tree.isLeaf(node) && tree.proof(node) == MctsTree.UNPROVEN) {
+                int child = tree.getBestUCTChild(node, raveEquivalence);
+                if (child == MctsTree.NONE) {
+                    tree.prove(node, MctsTree.PROVEN_WIN); // every move of the side to move loses
+                    break;
+                }
+                node = child;
+                tree.addVisit(node);
+                pos.makeMove(tree.move(node));
+                blackToMove = !blackToMove;
+            }
 
-        // Loop through the board to find all possible moves for the bot's pieces
-        if(isBlackNode == isBlack) {
-            for (int row = 0; row < boardScreen.gridSize; row++) {
-                for (int col = 0; col < boardScreen.gridSize; col++) {
-                    if (isBotPiece(row, col)) {
-                        // Get all valid moves for this piece
-                        List<Move> pieceMoves = getValidMovesForPiece(boardScreen, row, col, currentboard, isBlack);
-                        moves.addAll(pieceMoves); // Add to the list of moves
+            int winner = provenWinner(node, blackToMove);
+            if (winner == FiancoRules.EMPTY && (winner = pos.winner(blackToMove)) != FiancoRules.EMPTY) {
+                proveGameOver(node, blackToMove, winner);
+            } else if (winner == FiancoRules.EMPTY) {
+                // Expansion, a node that is not terminal always has a legal move
+                pos.generateMoves(blackToMove, moves);
+                if (tree.expand(node, moves)) {
+                    node = tree.firstChild(node) + random.nextInt(tree.childCount(node));
+                    tree.addVisit(node);
+                    pos.makeMove(tree.move(node));
+                    blackToMove = !blackToMove;
+                    winner = pos.winner(blackToMove);
+                    if (winner != FiancoRules.EMPTY) {
+                        proveGameOver(node, blackToMove, winner);
                     }
                 }
-            }
-        }else {
-            for (int row = 0; row < boardScreen.gridSize; row++) {
-                for (int col = 0; col < boardScreen.gridSize; col++) {
-                    if (isOpponentPiece(row, col)) {
-                        // Get all valid moves for this piece
-                        List<Move> pieceMoves = getValidMovesForPiece(boardScreen, row, col, currentboard, !isBlack);
-                        moves.addAll(pieceMoves); // Add to the list of moves
+                if (winner == FiancoRules.EMPTY && leaf != null) {
+                    long blackWins = 0;
+                    for (int i = 0; i < playoutsPerLeaf; i++) {
+                        leaf.copyFrom(pos);
+                        if (playout.play(leaf, blackToMove, played) == FiancoRules.BLACK) {
+                            blackWins++;
+                        }
                     }
+                    backpropagation(node, blackToMove, blackWins, played);
+                    continue;
+                }
+                if (winner == FiancoRules.EMPTY) {
+                    winner = playout.play(pos, blackToMove, played);
                 }
             }
+            backpropagation(node, blackToMove, winner == FiancoRules.BLACK ? playoutsPerLeaf : 0, played);
         }
-
-        return moves;
-    }
-    // Check if the stone belongs to the bot
-    private boolean isBotPiece(int row, int col) {
-        return (isBlack && board[row][col] == 2) || (!isBlack && board[row][col] == 1);
     }
-    private boolean isOpponentPiece(int row, int col) {
-        return (!isBlack && board[row][col] == 2) || (isBlack && board[row][col] == 1);
-    }
-    private List<Move> getValidMovesForPiece(BoardScreen boardScreen, int row, int col, int[][]currentboard, boolean isBlack) {
-        List<Move> validMoves = new ArrayList<>();
-
-        // Try moving in all four directions (forward for white,backward for black, left and right) if allowed
-        if(isBlack && row>0)
-            addMoveIfValid(currentboard, validMoves, row, col, row - 1, col); // Down
-        if(!isBlack && row<8)
-            addMoveIfValid(currentboard, validMoves, row, col, row + 1, col); // Forward
-        if(col>0)
-            addMoveIfValid(currentboard, validMoves, row, col, row, col - 1); // Left
-        if(col<8)
-            addMoveIfValid(currentboard, validMoves, row, col, row, col + 1); // Right
-
-        // Check for attack moves
-        List<Move> getAttackMoves = boardScreen.checkForCapturesSpec(currentboard,!isBlack,row,col);
-        //System.out.println(getAttackMoves.size());
-        if (getAttackMoves.size()!=0) {
-            validMoves.addAll(getAttackMoves); // Add any valid attack moves
-        }
 
-        return validMoves;
-    }
-    private void addMoveIfValid(int[][] board, List<Move> validMoves, int startRow, int startCol, int endRow, int endCol) {
-        if (board[endRow][endCol] == 0) {
-            validMoves.add(new Move(startRow, startCol, endRow, endCol, false));
+    // The winner a proven node leads to, EMPTY if the node is not proven
+    private int provenWinner(int node, boolean blackToMove) {
+        int proof = tree.proof(node);
+        if (proof == MctsTree.UNPROVEN) {
+            return FiancoRules.EMPTY;
         }
+        boolean moverIsBlack = !blackToMove; // proofs are for the player who moved into the node
+        return (proof == MctsTree.PROVEN_WIN) == moverIsBlack ? FiancoRules.BLACK : FiancoRules.WHITE;
     }
-    public int[][] makeMove(int[][] board, Move move, boolean isBlacky){
-        //System.out.println(move.startRow + " " + move.startCol + " " + move.endRow + " " + move.endCol);
-        int [][] newboard = deepCopyBoard(board);
-        if(move.isAttackMove()){
-            if(isBlacky){
-                if(move.endCol>move.startCol){// Black attack to the right
-                    newboard[move.startRow-1][move.startCol+1] = 0;}
-                else{ // Black attack to the left
-                    newboard[move.startRow-1][move.startCol-1] = 0;}
-            }else{
-                if(move.endCol>move.startCol){// White attack to the right
-                    newboard[move.startRow+1][move.startCol+1] = 0;}
-                else{ // White attack to the left
-                    newboard[move.startRow+1][move.startCol-1] = 0;}
-            }
 
-        }
-        newboard[move.endRow][move.endCol] = newboard[move.startRow][move.startCol];
-        newboard[move.startRow][move.startCol] = 0;
-        return newboard;
+    private void proveGameOver(int node, boolean blackToMove, int winner) {
+        tree.prove(node, (winner == FiancoRules.BLACK) != blackToMove ? MctsTree.PROVEN_WIN : MctsTree.PROVEN_LOSS);
     }
-    private int[][] deepCopyBoard(int[][] originalBoard) {
-        int[][] copy = new int[originalBoard.length][originalBoard[0].length];
-        for (int i = 0; i < originalBoard.length; i++) {
-            System.arraycopy(originalBoard[i], 0, copy[i], 0, originalBoard[i].length);
-        }
-        return copy;
-    }
-    private boolean isGameOver(int[][] board) {
-        this.board = board;
 
-        // Check if a black stone has reached row 0 (top)
-        for (int i = 0; i < board[0].length; i++) {
-            if (board[0][i] == 2) {
-                blackWins = true;
-                return true;
-            }
-        }
-
-        // Check if a white stone has reached row 8 (bottom)
-        for (int i = 0; i < board[8].length; i++) {
-            if (board[8][i] == 1) {
-                whiteWins = true;
-                return true;
+    // One visit was already counted during selection, the other playouts of the leaf and the wins are added here.
+    // A node's wins belong to the player who moved into it, the opposite of the side to move there.
+    // With RAVE, played holds the moves after the node, the node's own move is added on the way up.
+    private void backpropagation(int node, boolean blackToMove, long blackWins, AmafMoves played) {
+        while (node != MctsTree.NONE) {
+            tree.addVisits(node, playoutsPerLeaf - 1);
+            tree.addWins(node, (int) (blackToMove ? playoutsPerLeaf - blackWins : blackWins));
+            if (played != null) {
+                updateAmaf(node, blackToMove, (int) (blackToMove ? blackWins : playoutsPerLeaf - blackWins), played);
+                played.add(!blackToMove, tree.move(node));
             }
+            blackToMove = !blackToMove;
+            node = tree.parent(node);
         }
+    }
 
-        // Check if still are any white or black stones
-        int countW = 0;
-        int countB = 0;
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board.length; j++) {
-                if (board[i][j] == 1)
-                    countW++;
-                else if(board[i][j] == 2)
-                    countB++;
-                else if(countW!=0 && countB!=0)
-                    break;
+    // Every child whose move the side to move played later in the iteration gets the result as if it was played first
+    private void updateAmaf(int node, boolean blackToMove, int moverWins, AmafMoves played) {
+        int n = tree.childCount(node);
+        for (int child = tree.firstChild(node); n-- > 0; child++) {
+            if (played.contains(blackToMove, tree.move(child))) {
+                tree.addAmaf(child, playoutsPerLeaf, moverWins);
             }
         }
-        if(countW==0){
-            blackWins = true;
-            return true;
-        } else if (countB==0) {
-            whiteWins = true;
-            return true;
-        }
-        return false;
-    }
-    private boolean getWinner(){
-        if(isBlack && blackWins || !isBlack && whiteWins){
-            return true;
-        }else{
-            return false;
-        }
     }
+
     public void changeSide(){
         isBlack = !isBlack;
     }
@@ -0,0 +1,171 @@
+package io.github.fianco;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MTCS over a transposition graph (MctsGraph) instead of a tree: every position has one node keyed
+ * by its Zobrist hash, so the statistics of a position are shared by all the move orders that reach
+ * it. Selection is UCT on the children's nodes, backpropagation updates the nodes on the path the
+ * iteration took. A path is cut off after MAX_PATH plies, since the graph can have cycles.
+ *
+ * The workers, virtual loss and limits work as in MTCS. The graph is kept from one move to the next,
+ * the new root simply finds its node again, and it is only cleared once it is half full. The solver,
+ * RAVE and the batched playouts of MTCS are not used here.
+ */
+public class MTCSDag extends Bot {
+    private static final int DEFAULT_SLOTS_LOG2 = 21; // about 64 MB
+    private static final int MAX_PATH = 128;
+    private static final int CLOCK_CHECK_MASK = 63;
+
+    // Shared by every instance, so a bot that is replaced leaves no threads behind: idle workers end
+    // after a minute
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "MTCSDag worker");
+        thread.setDaemon(true); // do not keep the application alive
+        return thread;
+    });
+
+    private int iterations;  // Number of iterations to run MCTS, over all threads
+    private int numThreads;  // Number of threads for parallelism
+    private final long timeConstraint; // milliseconds per move
+    private final Playout playout = new Playout(true);
+    private final MctsGraph graph;
+
+    public MTCSDag(boolean isBlack, int[][] board, int iterations, int numThreads) {
+        this(isBlack, board, iterations, numThreads, DEFAULT_SLOTS_LOG2, Long.MAX_VALUE);
+    }
+
+    // With iterations = Integer.MAX_VALUE only the time constraint (milliseconds per move) limits the search
+    public MTCSDag(boolean isBlack, int[][] board, int iterations, int numThreads, int log2Slots, long timeConstraint) {
+        super(isBlack, board);
+        this.iterations = iterations;
+        this.numThreads = Math.max(1, numThreads);
+        this.timeConstraint = timeConstraint;
+        this.graph = new MctsGraph(log2Slots);
+    }
+
+    public Move findMove(int[][] board) {
+        Move bestMove = runMCTS(board);
+        if (bestMove != null) {
+            System.out.println(bestMove.startRow + " " + bestMove.startCol);
+        }
+        return bestMove;
+    }
+
+    private Move runMCTS(int[][] board) {
+        List<Move> legalMoves = FiancoRules.getLegalMoves(board, isBlack);
+        if (legalMoves.isEmpty()) {
+            return null;
+        }
+        FiancoPosition rootPosition = new FiancoPosition(board);
+        boolean blackToMove = isBlack;
+        long rootHash = MctsGraph.hash(rootPosition, blackToMove);
+        if (graph.halfFull()) {
+            graph.clear();
+        }
+        int root = graph.node(rootHash);
+        if (root == MctsGraph.NONE) {
+            graph.clear();
+            root = graph.node(rootHash);
+        }
+        int reused = graph.visits(root);
+        long startTime = System.nanoTime();
+        long deadline = timeConstraint >= Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : startTime + timeConstraint * 1_000_000;
+
+        AtomicInteger remaining = new AtomicInteger(iterations);
+        List<Future<?>> futures = new ArrayList<>();
+        int rootNode = root;
+        for (int i = 0; i < numThreads; i++) {
+            futures.add(WORKERS.submit(() -> search(rootPosition, blackToMove, rootHash, rootNode, remaining, deadline)));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+
+        long elapsed = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+        int done = graph.visits(root) - reused;
+        System.out.println("MTCSDag " + done + " iterations in " + elapsed + " ms, " + done * 1000L / elapsed + " iterations/s, "
+            + reused + " visits reused, " + graph.size() + " positions");
+
+        int bestEdge = graph.getBestEdge(root);
+        return bestEdge != MctsGraph.NONE ? Move.unpack(graph.edgeMove(bestEdge)) : legalMoves.get(0);
+    }
+
+    private void search(FiancoPosition rootPosition, boolean rootBlackToMove, long rootHash, int root, AtomicInteger remaining, long deadline) {
+        FiancoPosition pos = new FiancoPosition();
+        MoveList moves = new MoveList();
+        int[] path = new int[MAX_PATH];
+        Random random = ThreadLocalRandom.current();
+        for (int n = 0; remaining.getAndDecrement() > 0; n++) {
+            if ((n & CLOCK_CHECK_MASK) == CLOCK_CHECK_MASK && System.nanoTime() >= deadline) {
+                break;
+            }
+            pos.copyFrom(rootPosition);
+            boolean blackToMove = rootBlackToMove;
+            long hash = rootHash;
+
+            // Selection, the visits are counted on the way down (virtual loss)
+            int node = root;
+            int length = 0;
+            path[length++] = node;
+            graph.addVisit(node);
+            while (!graph.isLeaf(node) && length < MAX_PATH) {
+                int edge = graph.getBestUCTEdge(node);
+                hash = MctsGraph.hashAfter(hash, graph.edgeMove(edge), blackToMove);
+                pos.makeMove(graph.edgeMove(edge));
+                blackToMove = !blackToMove;
+                node = graph.edgeChild(edge);
+                path[length++] = node;
+                graph.addVisit(node);
+            }
+
+            int winner = pos.winner(blackToMove);
+            if (winner == FiancoRules.EMPTY) {
+                // Expansion, the children may already have statistics from other paths
+                if (length < MAX_PATH && expand(pos, node, hash, blackToMove, moves)) {
+                    int edge = graph.firstEdge(node) + random.nextInt(graph.childCount(node));
+                    pos.makeMove(graph.edgeMove(edge));
+                    blackToMove = !blackToMove;
+                    node = graph.edgeChild(edge);
+                    path[length++] = node;
+                    graph.addVisit(node);
+                    winner = pos.winner(blackToMove);
+                }
+                if (winner == FiancoRules.EMPTY) {
+                    winner = playout.play(pos, blackToMove);
+                }
+            }
+
+            // Backpropagation along the path, a node's wins belong to the player who is not to move there
+            for (int i = length - 1; i >= 0; i--) {
+                if ((winner == FiancoRules.BLACK) != blackToMove) {
+                    graph.addWin(path[i]);
+                }
+                blackToMove = !blackToMove;
+            }
+        }
+    }
+
+    private boolean expand(FiancoPosition pos, int node, long hash, boolean blackToMove, MoveList moves) {
+        pos.generateMoves(blackToMove, moves);
+        return graph.expand(node, hash, blackToMove, moves);
+    }
+
+    public void changeSide(){
+        isBlack = !isBlack;
+    }
+}
@@ -0,0 +1,236 @@
+package io.github.fianco;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * MCTS statistics per position instead of per path. The nodes are kept in a hash table keyed by the
+ * Zobrist hash of the position and the side to move, so a position that is reached by different move
+ * orders (sideways moves commute) has one node that gets all the visits. The edges of an expanded node
+ * point at the nodes after each move, which makes the nodes a graph. Sideways moves back and forth
+ * can even close a cycle, so a search has to limit the length of its path.
+ *
+ * The table uses open addressing with linear probing. A thread claims a slot with a CAS on its key,
+ * so several threads can add nodes at once, and the child count is written last when a node is
+ * expanded, as in MctsTree. Nodes are never removed, clear() empties the whole table.
+ */
+public class MctsGraph {
+    public static final int NONE = -1;
+
+    private static final int UNEXPANDED = 0; // a position that is not over always has a move
+    private static final int EXPANDING = -1;
+
+    private static final long[][] KEYS = new long[2][FiancoPosition.SQUARES]; // white, black
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        Random random = new Random(0x2545F4914F6CDD1DL);
+        for (int sq = 0; sq < FiancoPosition.SQUARES; sq++) {
+            KEYS[0][sq] = random.nextLong();
+            KEYS[1][sq] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private final int mask;
+    private final int maxNodes; // the table is kept at most three quarters full
+    private final AtomicLongArray keys; // 0 for a free slot
+    private final AtomicIntegerArray childCount; // UNEXPANDED, EXPANDING or the number of edges
+    private final AtomicIntegerArray visits;
+    private final AtomicIntegerArray wins; // wins of the player who is not to move in the position
+    private final int[] firstEdge;
+    private final int[] edgeMove;
+    private final int[] edgeChild;
+    private final AtomicInteger nodes = new AtomicInteger();
+    private final AtomicInteger edges = new AtomicInteger();
+
+    // 2^log2Slots slots, and as many edges
+    public MctsGraph(int log2Slots) {
+        int slots = 1 << log2Slots;
+        this.mask = slots - 1;
+        this.maxNodes = slots / 4 * 3;
+        this.keys = new AtomicLongArray(slots);
+        this.childCount = new AtomicIntegerArray(slots);
+        this.visits = new AtomicIntegerArray(slots);
+        this.wins = new AtomicIntegerArray(slots);
+        this.firstEdge = new int[slots];
+        this.edgeMove = new int[slots];
+        this.edgeChild = new int[slots];
+    }
+
+    public static long hash(FiancoPosition pos, boolean blackToMove) {
+        long hash = blackToMove ? BLACK_TO_MOVE : 0;
+        for (int sq = 0; sq < FiancoPosition.SQUARES; sq++) {
+            int piece = pos.pieceAt(sq);
+            if (piece != FiancoRules.EMPTY) {
+                hash ^= KEYS[piece == FiancoRules.BLACK ? 1 : 0][sq];
+            }
+        }
+        return hash;
+    }
+
+    // Hash of the position after the side to move plays the packed move
+    public static long hashAfter(long hash, int move, boolean blackToMove) {
+        long[] own = KEYS[blackToMove ? 1 : 0];
+        int from = Move.from(move), to = Move.to(move);
+        hash ^= own[from] ^ own[to] ^ BLACK_TO_MOVE;
+        if (Move.isAttack(move)) {
+            hash ^= KEYS[blackToMove ? 0 : 1][(from + to) / 2]; // the captured stone is halfway
+        }
+        return hash;
+    }
+
+    public void clear() {
+        for (int slot = 0; slot <= mask; slot++) {
+            keys.set(slot, 0);
+            childCount.set(slot, UNEXPANDED);
+            visits.set(slot, 0);
+            wins.set(slot, 0);
+        }
+        nodes.set(0);
+        edges.set(0);
+    }
+
+    // The node of the position, added if it is new, or NONE if the table is full
+    public int node(long hash) {
+        long key = hash == 0 ? 1 : hash; // 0 marks a free slot
+        for (int slot = (int) (key ^ (key >>> 32)) & mask; ; slot = (slot + 1) & mask) {
+            long found = keys.get(slot);
+            if (found == key) {
+                return slot;
+            }
+            if (found == 0) {
+                if (nodes.get() >= maxNodes) {
+                    return NONE;
+                }
+                if (keys.compareAndSet(slot, 0, key)) {
+                    nodes.incrementAndGet();
+                    return slot;
+                }
+                if (keys.get(slot) == key) {
+                    return slot; // another thread added the same position
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds an edge for every move, to the node of the position after it. Only one thread can expand a
+     * node, the others get false, as does a node whose edges or children do not fit anymore.
+     */
+    public boolean expand(int node, long hash, boolean blackToMove, MoveList moves) {
+        if (!childCount.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+            return false;
+        }
+        int n = moves.size();
+        int first;
+        do {
+            first = edges.get();
+            if (first + n > edgeMove.length) {
+                childCount.set(node, UNEXPANDED); // full, the node stays a leaf
+                return false;
+            }
+        } while (!edges.compareAndSet(first, first + n));
+
+        for (int i = 0; i < n; i++) {
+            int child = node(hashAfter(hash, moves.get(i), blackToMove));
+            if (child == NONE) {
+                childCount.set(node, UNEXPANDED); // the edges taken so far are lost, the table is full anyway
+                return false;
+            }
+            edgeMove[first + i] = moves.get(i);
+            edgeChild[first + i] = child;
+        }
+        firstEdge[node] = first;
+        childCount.set(node, n); // publishes the edges
+        return true;
+    }
+
+    public boolean isLeaf(int node) {
+        return childCount.get(node) <= 0;
+    }
+
+    public int childCount(int node) {
+        return Math.max(0, childCount.get(node));
+    }
+
+    // Only valid once childCount(node) has been read as more than 0
+    public int firstEdge(int node) {
+        return firstEdge[node];
+    }
+
+    public int edgeMove(int edge) {
+        return edgeMove[edge];
+    }
+
+    public int edgeChild(int edge) {
+        return edgeChild[edge];
+    }
+
+    public int visits(int node) {
+        return visits.get(node);
+    }
+
+    public int wins(int node) {
+        return wins.get(node);
+    }
+
+    public void addVisit(int node) {
+        visits.incrementAndGet(node);
+    }
+
+    public void addWin(int node) {
+        wins.incrementAndGet(node);
+    }
+
+    // UCT over the children's own statistics, which include the visits through other parents
+    public int getBestUCTEdge(int node) {
+        int n = childCount(node);
+        int first = firstEdge[node];
+        int bestEdge = NONE;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        double logVisits = Math.log(visits.get(node));
+
+        for (int edge = first; edge < first + n; edge++) {
+            int child = edgeChild[edge];
+            int childVisits = visits.get(child);
+            if (childVisits == 0) {
+                return edge; // try every child once first
+            }
+            double uctValue = (wins.get(child) / (double) childVisits) +
+                Math.sqrt(2 * logVisits / childVisits);
+            if (uctValue > bestValue) {
+                bestValue = uctValue;
+                bestEdge = edge;
+            }
+        }
+        return bestEdge;
+    }
+
+    // The edge to the most visited child, NONE for a leaf
+    public int getBestEdge(int node) {
+        int n = childCount(node);
+        int first = firstEdge[node];
+        int bestEdge = NONE;
+        int maxVisits = Integer.MIN_VALUE;
+
+        for (int edge = first; edge < first + n; edge++) {
+            if (visits.get(edgeChild[edge]) > maxVisits) {
+                maxVisits = visits.get(edgeChild[edge]);
+                bestEdge = edge;
+            }
+        }
+        return bestEdge;
+    }
+
+    // True once half of the nodes or edges are used, a good moment to start over between moves
+    public boolean halfFull() {
+        return nodes.get() > maxNodes / 2 || edges.get() > edgeMove.length / 2;
+    }
+
+    public int size() {
+        return nodes.get();
+    }
+}
@@ -0,0 +1,311 @@
+package io.github.fianco;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * MCTS tree kept in parallel primitive arrays instead of node objects. A node only stores the packed
+ * move (Move.pack) that leads to it, positions are rebuilt by replaying the moves from the root.
+ * The children of a node are allocated next to each other, so the node keeps its first child and the
+ * number of children. All nodes come from a pool of fixed size that is recycled by clear().
+ *
+ * Visits and wins are atomic so several threads can search the tree at once. The child count is
+ * written last when a node is expanded, so a thread that reads it also sees the children.
+ *
+ * Nodes can also be proven (MCTS-Solver): a game that is over is a proven win or loss, a node with a
+ * child that is a proven win for the side to move is a proven loss for the player who moved into it,
+ * and a node whose children are all proven losses is a proven win. Selection skips proven losses.
+ *
+ * For RAVE every node also has all-moves-as-first statistics: the iterations in which the player who
+ * moved into the node played that move anywhere later on, in the tree or in the playout, from the
+ * parent's position.
+ */
+public class MctsTree {
+    public static final int ROOT = 0;
+    public static final int NONE = -1;
+
+    // Proofs, like the wins, are for the player who made the move into the node
+    public static final int UNPROVEN = 0;
+    public static final int PROVEN_WIN = 1;
+    public static final int PROVEN_LOSS = -1;
+
+    private static final int UNEXPANDED = -1;
+    private static final int EXPANDING = -2;
+
+    private final int capacity;
+    private final int[] parent;
+    private final int[] move;
+    private final int[] firstChild;
+    private final AtomicIntegerArray childCount; // UNEXPANDED, EXPANDING or the number of children
+    private final AtomicIntegerArray visits;
+    private final AtomicIntegerArray wins; // wins of the player who made the move into the node
+    private final AtomicIntegerArray proof;
+    private final AtomicIntegerArray amafVisits;
+    private final AtomicIntegerArray amafWins;
+    private final AtomicInteger size = new AtomicInteger();
+
+    public MctsTree(int capacity) {
+        this.capacity = capacity;
+        this.parent = new int[capacity];
+        this.move = new int[capacity];
+        this.firstChild = new int[capacity];
+        this.childCount = new AtomicIntegerArray(capacity);
+        this.visits = new AtomicIntegerArray(capacity);
+        this.wins = new AtomicIntegerArray(capacity);
+        this.proof = new AtomicIntegerArray(capacity);
+        this.amafVisits = new AtomicIntegerArray(capacity);
+        this.amafWins = new AtomicIntegerArray(capacity);
+        clear();
+    }
+
+    // Drop every node but a fresh root, the arrays are reused
+    public void clear() {
+        parent[ROOT] = NONE;
+        move[ROOT] = 0;
+        reset(ROOT);
+        size.set(1);
+    }
+
+    private void reset(int node) {
+        childCount.set(node, UNEXPANDED);
+        visits.set(node, 0);
+        wins.set(node, 0);
+        proof.set(node, UNPROVEN);
+        amafVisits.set(node, 0);
+        amafWins.set(node, 0);
+    }
+
+    /**
+     * Replaces this tree by a copy of the subtree of source below node, with its statistics, so the
+     * old tree can be cleared. Children stay next to each other, the subtree always fits since both
+     * trees have the same capacity. Returns the number of nodes copied.
+     */
+    public int copySubtree(MctsTree source, int node) {
+        clear();
+        visits.set(ROOT, source.visits(node));
+        wins.set(ROOT, source.wins(node));
+        proof.set(ROOT, source.proof(node));
+        copyChildren(source, node, ROOT);
+        return size();
+    }
+
+    private void copyChildren(MctsTree source, int sourceNode, int node) {
+        int n = source.childCount(sourceNode);
+        if (n == 0 || size.get() + n > capacity) {
+            return;
+        }
+        int sourceFirst = source.firstChild(sourceNode);
+        int first = size.getAndAdd(n);
+        for (int i = 0; i < n; i++) {
+            parent[first + i] = node;
+            move[first + i] = source.move(sourceFirst + i);
+            childCount.set(first + i, UNEXPANDED);
+            visits.set(first + i, source.visits(sourceFirst + i));
+            wins.set(first + i, source.wins(sourceFirst + i));
+            proof.set(first + i, source.proof(sourceFirst + i));
+            amafVisits.set(first + i, source.amafVisits(sourceFirst + i));
+            amafWins.set(first + i, source.amafWins(sourceFirst + i));
+        }
+        firstChild[node] = first;
+        childCount.set(node, n);
+        for (int i = 0; i < n; i++) {
+            copyChildren(source, sourceFirst + i, first + i);
+        }
+    }
+
+    /**
+     * Adds the moves as the children of the node. Only one thread can expand a node, the others
+     * get false, as does a node that would not fit in the pool anymore.
+     */
+    public boolean expand(int node, MoveList moves) {
+        if (!childCount.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+            return false;
+        }
+        int n = moves.size();
+        int first;
+        do {
+            first = size.get();
+            if (first + n > capacity) {
+                childCount.set(node, UNEXPANDED); // the tree is full, the node stays a leaf
+                return false;
+            }
+        } while (!size.compareAndSet(first, first + n));
+
+        for (int i = 0; i < n; i++) {
+            parent[first + i] = node;
+            move[first + i] = moves.get(i);
+            reset(first + i);
+        }
+        firstChild[node] = first;
+        childCount.set(node, n); // publishes the children
+        return true;
+    }
+
+    public boolean isLeaf(int node) {
+        return childCount.get(node) <= 0;
+    }
+
+    public int childCount(int node) {
+        return Math.max(0, childCount.get(node));
+    }
+
+    // Only valid once childCount(node) has been read as more than 0
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    public int move(int node) {
+        return move[node];
+    }
+
+    public int visits(int node) {
+        return visits.get(node);
+    }
+
+    public int wins(int node) {
+        return wins.get(node);
+    }
+
+    public void addVisit(int node) {
+        visits.incrementAndGet(node);
+    }
+
+    public void addVisits(int node, int n) {
+        if (n != 0) {
+            visits.addAndGet(node, n);
+        }
+    }
+
+    public void addWins(int node, int result) {
+        if (result != 0) {
+            wins.addAndGet(node, result);
+        }
+    }
+
+    public int amafVisits(int node) {
+        return amafVisits.get(node);
+    }
+
+    public int amafWins(int node) {
+        return amafWins.get(node);
+    }
+
+    public void addAmaf(int node, int visits, int wins) {
+        amafVisits.addAndGet(node, visits);
+        if (wins != 0) {
+            amafWins.addAndGet(node, wins);
+        }
+    }
+
+    public int proof(int node) {
+        return proof.get(node);
+    }
+
+    // Sets the proof of the node and of every ancestor that is proven by it
+    public void prove(int node, int value) {
+        while (true) {
+            proof.set(node, value);
+            int parentNode = parent[node];
+            if (parentNode == NONE) {
+                return;
+            }
+            if (value == PROVEN_WIN) {
+                value = PROVEN_LOSS; // the side to move in the parent has a winning move
+            } else if (allChildrenLost(parentNode)) {
+                value = PROVEN_WIN;
+            } else {
+                return;
+            }
+            node = parentNode;
+        }
+    }
+
+    private boolean allChildrenLost(int node) {
+        int n = childCount(node);
+        int first = firstChild[node];
+        for (int child = first; child < first + n; child++) {
+            if (proof.get(child) != PROVEN_LOSS) {
+                return false;
+            }
+        }
+        return n > 0;
+    }
+
+    // NONE if every child is a proven loss
+    public int getBestUCTChild(int node) {
+        return getBestUCTChild(node, 0);
+    }
+
+    /**
+     * UCT with RAVE: the win rate of a child is blended with its AMAF win rate, with weight
+     * beta = sqrt(k / (3 * visits + k)) for the AMAF part. k (raveEquivalence) is the number of visits
+     * at which both count the same, 0 turns RAVE off. A child that was not visited yet but has AMAF
+     * statistics is scored from them as if it had one visit, instead of being tried first.
+     */
+    public int getBestUCTChild(int node, double raveEquivalence) {
+        int n = childCount(node);
+        int first = firstChild[node];
+        int bestNode = NONE;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        double logVisits = Math.log(visits.get(node));
+
+        for (int child = first; child < first + n; child++) {
+            if (proof.get(child) == PROVEN_LOSS) {
+                continue; // never worth trying again
+            }
+            int childVisits = visits.get(child);
+            int childAmafVisits = raveEquivalence > 0 ? amafVisits.get(child) : 0;
+            if (childVisits == 0 && childAmafVisits == 0) {
+                return child; // try every child once first
+            }
+            double value = childVisits > 0 ? wins.get(child) / (double) childVisits : 0;
+            if (childAmafVisits > 0) {
+                double beta = Math.sqrt(raveEquivalence / (3 * childVisits + raveEquivalence));
+                value = (1 - beta) * value + beta * amafWins.get(child) / (double) childAmafVisits;
+            }
+            double uctValue = value + Math.sqrt(2 * logVisits / Math.max(1, childVisits));
+            if (uctValue > bestValue) {
+                bestValue = uctValue;
+                bestNode = child;
+            }
+        }
+        return bestNode;
+    }
+
+    // A proven win, else the most visited child that is not a proven loss, or NONE for a leaf
+    public int getBestChild(int node) {
+        int n = childCount(node);
+        int first = firstChild[node];
+        int bestNode = NONE;
+        int maxVisits = Integer.MIN_VALUE;
+
+        for (int child = first; child < first + n; child++) {
+            if (proof.get(child) == PROVEN_WIN) {
+                return child;
+            }
+        }
+        boolean lost = allChildrenLost(node); // then any move will do
+        for (int child = first; child < first + n; child++) {
+            if (proof.get(child) == PROVEN_LOSS && !lost) {
+                continue;
+            }
+            if (visits.get(child) > maxVisits) {
+                maxVisits = visits.get(child);
+                bestNode = child;
+            }
+        }
+        return bestNode;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
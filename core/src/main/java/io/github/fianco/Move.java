@@ -24,6 +24,36 @@ public class Move {
         this.evaluation = evaluation; // Attach evaluation score
     }
 
+    // Moves packed into an int: bits 0-6 start square, bits 7-13 end square, bit 14 attack flag.
+    // Squares are numbered row * 9 + col like in FiancoPosition.
+    private static final int SQUARE_MASK = 0x7F;
+    private static final int ATTACK_FLAG = 1 << 14;
+
+    public static int pack(int from, int to, boolean isAttackMove) {
+        return from | (to << 7) | (isAttackMove ? ATTACK_FLAG : 0);
+    }
+
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int to(int move) {
+        return (move >>> 7) & SQUARE_MASK;
+    }
+
+    public static boolean isAttack(int move) {
+        return (move & ATTACK_FLAG) != 0;
+    }
+
+    public static Move unpack(int move) {
+        int from = from(move), to = to(move);
+        return new Move(from / 9, from % 9, to / 9, to % 9, isAttack(move));
+    }
+
+    public int pack() {
+        return pack(startRow * 9 + startCol, endRow * 9 + endCol, isAttackMove);
+    }
+
     public boolean isAttackMove(){
         return this.isAttackMove;
     }
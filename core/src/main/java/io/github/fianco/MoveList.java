@@ -0,0 +1,46 @@
+package io.github.fianco;
+
+/**
+ * Fixed size buffer of packed moves (see Move.pack). Searches keep one list per ply and reuse it,
+ * so generating moves does not allocate anything.
+ */
+public class MoveList {
+    // 15 stones with at most 3 steps each, or 2 captures each
+    public static final int MAX_MOVES = 64;
+
+    private final int[] moves = new int[MAX_MOVES];
+    private int size;
+
+    // One list per ply, indexed by the remaining depth or by the ply
+    public static MoveList[] forPlies(int plies) {
+        MoveList[] lists = new MoveList[plies];
+        for (int i = 0; i < plies; i++) {
+            lists[i] = new MoveList();
+        }
+        return lists;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
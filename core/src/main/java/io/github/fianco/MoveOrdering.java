@@ -0,0 +1,77 @@
+package io.github.fianco;
+
+/**
+ * Orders the quiet moves of a negamax search: first the two killer moves of the ply (quiet moves
+ * that caused a beta cutoff in a sibling node), then the others by their history score, a butterfly
+ * table (from square x to square per side) that grows by depth * depth with every cutoff. Captures
+ * are mandatory, so a list holds either only captures or only quiet moves, and capture lists are
+ * left as they are.
+ *
+ * Not thread safe, a search thread keeps its own.
+ */
+public class MoveOrdering {
+    private static final int SQUARES = FiancoPosition.SQUARES;
+
+    private final int[][] killers; // two per ply, 0 for none (a real move never packs to 0)
+    private final int[][] history = new int[2][SQUARES * SQUARES]; // white, black
+    private final int[] scores = new int[MoveList.MAX_MOVES];
+
+    public MoveOrdering(int maxPly) {
+        this.killers = new int[maxPly + 1][2];
+    }
+
+    // Before a new search: the killers are forgotten, the history is halved so it follows the game
+    public void newSearch() {
+        for (int[] slots : killers) {
+            slots[0] = 0;
+            slots[1] = 0;
+        }
+        for (int[] table : history) {
+            for (int i = 0; i < table.length; i++) {
+                table[i] >>= 1;
+            }
+        }
+    }
+
+    public void order(MoveList moves, int ply, boolean black) {
+        int n = moves.size();
+        if (n < 2 || Move.isAttack(moves.get(0))) {
+            return;
+        }
+        int[] table = history[black ? 1 : 0];
+        int[] slots = killers[ply];
+        for (int i = 0; i < n; i++) {
+            int move = moves.get(i);
+            // History scores stay far below the killer bonus
+            scores[i] = move == slots[0] ? Integer.MAX_VALUE : move == slots[1] ? Integer.MAX_VALUE - 1
+                : table[Move.from(move) * SQUARES + Move.to(move)];
+        }
+        // Insertion sort, stable and quick for a few dozen moves
+        for (int i = 1; i < n; i++) {
+            int move = moves.get(i);
+            int score = scores[i];
+            int j = i - 1;
+            for (; j >= 0 && scores[j] < score; j--) {
+                moves.set(j + 1, moves.get(j));
+                scores[j + 1] = scores[j];
+            }
+            moves.set(j + 1, move);
+            scores[j + 1] = score;
+        }
+    }
+
+    // The move caused a beta cutoff at this ply
+    public void cutoff(int move, int ply, int depth, boolean black) {
+        if (Move.isAttack(move)) {
+            return;
+        }
+        int[] slots = killers[ply];
+        if (slots[0] != move) {
+            slots[1] = slots[0];
+            slots[0] = move;
+        }
+        int index = Move.from(move) * SQUARES + Move.to(move);
+        int[] table = history[black ? 1 : 0];
+        table[index] = Math.min(table[index] + depth * depth, Integer.MAX_VALUE / 4);
+    }
+}
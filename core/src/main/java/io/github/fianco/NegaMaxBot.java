@@ -3,96 +3,149 @@ package io.github.fianco;
 import java.util.List;
 
 public class NegaMaxBot extends Bot {
+    private static final int MAX_QUIESCENCE_PLIES = 32; // a side cannot capture more than 14 times
+
     private int depthLimit; // Depth limit for alpha-beta pruning
+    private MoveList[] moveLists;
+    private final MoveList[] quiescenceLists = MoveList.forPlies(MAX_QUIESCENCE_PLIES);
+    private PrincipalVariation pv;
+    private final MoveOrdering ordering; // killers and history, kept from move to move
+    private int rootDepth; // depth of the current iteration, ply = rootDepth - depth
+    private final boolean pvs; // principal variation search instead of plain alpha-beta
 
     public NegaMaxBot(boolean isBlack, int[][] board, int depthLimit) {
+        this(isBlack, board, depthLimit, true);
+    }
+
+    public NegaMaxBot(boolean isBlack, int[][] board, int depthLimit, boolean pvs) {
         super(isBlack, board);
         this.depthLimit = depthLimit; // Set the maximum depth for the search
+        this.ordering = new MoveOrdering(depthLimit);
+        this.pvs = pvs;
     }
 
-    // Main method for the bot to make its move
-    public void calculate(BoardScreen boardScreen, int[][] board) {
+    // Main method for the bot to pick its move
+    public Move findMove(int[][] board) {
         BotLogic botLogic = new BotLogic(isBlack);
+        moveLists = MoveList.forPlies(depthLimit + 1);
+        pv = new PrincipalVariation(depthLimit);
+        ordering.newSearch();
+        FiancoPosition pos = new FiancoPosition(board);
         Move bestMove = null;
-        List<Move> moves = botLogic.getAllPossibleMoves(board, boardScreen, true);
-        moves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
+        List<Move> moves = botLogic.getAllPossibleMoves(pos, true); // captures are already forced
 
         if(moves.size() == 1){
             bestMove = moves.get(0);
+        }else if(!moves.isEmpty()){
+            rootDepth = depthLimit;
+            bestMove = pv.toMove(negamax(pos, depthLimit, -Integer.MAX_VALUE, Integer.MAX_VALUE, 1, botLogic));
         }
-        else if (moves.get(0).isAttackMove) {
-            moves.removeIf(move -> !move.isAttackMove);
-            if(moves.size()==1){
-                bestMove = moves.get(0);
-            }else{
-                bestMove = negamax(boardScreen, board, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE, 1, botLogic);
-            }
-        }else{
-            bestMove = negamax(boardScreen, board, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE, 1, botLogic);
-        }
-        System.out.println("best move " + bestMove.startRow + " " + bestMove.startCol + " to " + bestMove.endRow + " " + bestMove.endCol + " " + bestMove.evaluation);
 
         if (bestMove != null) {
-            // Execute the move
-            if (bestMove.isAttackMove) {
-                boardScreen.botAttackStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            } else {
-                boardScreen.botMoveStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            }
-        }else{
-            boardScreen.cantMove(this.isBlack);
+            System.out.println("best move " + bestMove.startRow + " " + bestMove.startCol + " to " + bestMove.endRow + " " + bestMove.endCol + " " + bestMove.evaluation + " pv " + pv);
         }
+        return bestMove;
     }
-    private Move negamax(BoardScreen boardScreen, int[][] board, int depth, int alpha, int beta, int max, BotLogic botLogic) {
-        if (depth == 0 || botLogic.isGameOver(board,boardScreen,max)) {
-            int evaluation;
-            if((botLogic.didBlackWin() && isBlack) || (botLogic.didWhiteWin() && !isBlack)){
-                evaluation = 10000;
-            } else if ((botLogic.didBlackWin() && !isBlack) || (botLogic.didWhiteWin() && isBlack)) {
-                evaluation = -10000;
-            }
-            else {
-                evaluation = botLogic.evaluateBoard(board); // Evaluate the board at the leaf node
-            }
-            botLogic.setWinsToFalse();
-
-            return new Move(-1,-1,-1,-1,false,max * evaluation); // Return the evaluation wrapped in a Move object
+    // Returns the score for the side to move, the best line is left in pv
+    private int negamax(FiancoPosition pos, int depth, int alpha, int beta, int max, BotLogic botLogic) {
+        int ply = rootDepth - depth;
+        pv.clear(ply);
+        if (depth == 0) {
+            return quiescence(pos, alpha, beta, max, botLogic, 0);
         }
-
-        List<Move> moves = botLogic.getAllPossibleMoves(board,boardScreen, max == 1); // Color == 1 for current player, -1 for opponent
-        moves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
-
-        if (moves.get(0).isAttackMove) {
-            moves.removeIf(move -> !move.isAttackMove);
+        if (botLogic.isGameOver(pos, max)) {
+            return evaluate(pos, max, botLogic);
         }
 
-        Move bestMove = null;
+        MoveList moves = moveLists[depth]; // one list per remaining depth, reused by every node at that depth
+        botLogic.getAllPossibleMoves(pos, max == 1, moves); // Color == 1 for current player, -1 for opponent
+        boolean black = (max == 1) == isBlack;
+        ordering.order(moves, ply, black);
+
         int maxEval = Integer.MIN_VALUE;
 
-        for (Move move : moves) {
-            botLogic.makeMove(board, move, isBlack && max == 1 || !isBlack && max == -1); // if true move is black, else white
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            botLogic.makeMove(pos, move);
 
-            Move resultMove = negamax(boardScreen, board, depth - 1, -beta, -alpha, -max, botLogic); // Negate alpha, beta, and color
-            if (-resultMove.evaluation > maxEval) {
-                maxEval = -resultMove.evaluation;
-                bestMove = move.clone();
-                bestMove.evaluation = maxEval;
+            int score = search(pos, depth - 1, alpha, beta, max, botLogic, i == 0);
+            if (score > maxEval) {
+                maxEval = score;
+                pv.update(ply, move);
             }
 
             // Undo the move
-            botLogic.undoMove(board, move, isBlack && max == 1 || !isBlack && max == -1);
+            botLogic.undoMove(pos, move);
 
             alpha = Math.max(alpha, maxEval);
             if (alpha >= beta) {
+                ordering.cutoff(move, ply, depth, black);
                 break; // Beta cut-off, no need to explore further if a winning move is found
             }
         }
 
-        if (bestMove == null) {
-            bestMove = moves.get(0); // Fallback in case no best move was found
+        if (maxEval == Integer.MIN_VALUE) {
+            pv.set(ply, moves.get(0)); // Fallback in case no best move was found
+            return 0;
         }
 
-        return bestMove;
+        return maxEval;
+    }
+    /**
+     * Extends a leaf while the side to move has a capture. Captures are mandatory, so such a position
+     * cannot be evaluated as it stands (no stand pat) and only the captures are searched. A position
+     * without a capture is evaluated.
+     */
+    private int quiescence(FiancoPosition pos, int alpha, int beta, int max, BotLogic botLogic, int qply) {
+        if (botLogic.isGameOver(pos, max) || !pos.hasCapture((max == 1) == isBlack) || qply + 1 == MAX_QUIESCENCE_PLIES) {
+            return evaluate(pos, max, botLogic); // over or quiet, stand pat
+        }
+        MoveList moves = quiescenceLists[qply];
+        botLogic.getAllPossibleMoves(pos, max == 1, moves); // only the captures, they are forced
+
+        int maxEval = Integer.MIN_VALUE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            botLogic.makeMove(pos, move);
+            int score = -quiescence(pos, -beta, -alpha, -max, botLogic, qply + 1);
+            botLogic.undoMove(pos, move);
+
+            maxEval = Math.max(maxEval, score);
+            alpha = Math.max(alpha, maxEval);
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        return maxEval;
+    }
+
+    // Score of a leaf for the side to move, a won or lost game if isGameOver found one
+    private int evaluate(FiancoPosition pos, int max, BotLogic botLogic) {
+        int evaluation;
+        if((botLogic.didBlackWin() && isBlack) || (botLogic.didWhiteWin() && !isBlack)){
+            evaluation = 10000;
+        } else if ((botLogic.didBlackWin() && !isBlack) || (botLogic.didWhiteWin() && isBlack)) {
+            evaluation = -10000;
+        }
+        else {
+            evaluation = botLogic.evaluateBoard(pos); // Evaluate the board at the leaf node
+        }
+        botLogic.setWinsToFalse();
+
+        return max * evaluation;
+    }
+
+    // PVS: the first move gets the full window, the others a null window that only tells whether they
+    // beat alpha, and they are searched again with the full window if they do
+    private int search(FiancoPosition pos, int depth, int alpha, int beta, int max, BotLogic botLogic, boolean first) {
+        if (!pvs || first) {
+            return -negamax(pos, depth, -beta, -alpha, -max, botLogic); // Negate alpha, beta, and color
+        }
+        int score = -negamax(pos, depth, -alpha - 1, -alpha, -max, botLogic);
+        if (score > alpha && score < beta) {
+            score = -negamax(pos, depth, -beta, -alpha, -max, botLogic);
+        }
+        return score;
     }
     public void changeSide(){
         isBlack = !isBlack;
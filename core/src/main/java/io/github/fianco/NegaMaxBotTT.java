@@ -4,60 +4,67 @@ import java.util.List;
 
 public class NegaMaxBotTT extends Bot {
     private int depthLimit; // Depth limit for alpha-beta pruning
+    private MoveList[] moveLists;
+    private PrincipalVariation pv;
+    private final MoveOrdering ordering; // killers and history, kept from move to move
+    private int rootDepth; // depth of the current iteration, ply = rootDepth - depth
     private ZobristTransposition zobristTransposition; // Instance of ZobristTransposition
-    private int flag = 0;
+    private final boolean pvs; // principal variation search instead of plain alpha-beta
 
     public NegaMaxBotTT(boolean isBlack, int[][] board, int depthLimit) {
+        this(isBlack, board, depthLimit, true);
+    }
+
+    public NegaMaxBotTT(boolean isBlack, int[][] board, int depthLimit, boolean pvs) {
         super(isBlack, board);
         this.depthLimit = depthLimit; // Set the maximum depth for the search
+        this.ordering = new MoveOrdering(depthLimit);
+        this.pvs = pvs;
         this.zobristTransposition = new ZobristTransposition(); // Initialize ZobristTransposition
-        this.zobristTransposition.resetTranspositionTable();
         this.zobristTransposition.computeZobristHash(board); // Compute initial Zobrist hash for the current board
     }
 
-    // Main method for the bot to make its move
-    public void calculate(BoardScreen boardScreen, int[][] board) {
+    // Main method for the bot to pick its move
+    public Move findMove(int[][] board) {
         this.zobristTransposition.computeZobristHash(board);
         BotLogic botLogic = new BotLogic(isBlack);
+        moveLists = MoveList.forPlies(depthLimit + 1);
+        pv = new PrincipalVariation(depthLimit);
+        ordering.newSearch();
+        FiancoPosition pos = new FiancoPosition(board);
         Move bestMove = null;
-        List<Move> moves = botLogic.getAllPossibleMoves(board, boardScreen, true);
-        moves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
+        List<Move> moves = botLogic.getAllPossibleMoves(pos, true); // captures are already forced
 
         if(moves.size() == 1){
             bestMove = moves.get(0);
+        }else if(!moves.isEmpty()){
+            openTranspositionTable(tableFile()); // kept from earlier moves and games
+            rootDepth = depthLimit;
+            bestMove = pv.toMove(negamax(pos, depthLimit, -Integer.MAX_VALUE, Integer.MAX_VALUE, 1, botLogic));
         }
-        else if (moves.get(0).isAttackMove) {
-            moves.removeIf(move -> !move.isAttackMove);
-            if(moves.size()==1){
-                bestMove = moves.get(0);
-            }else{
-                loadTranspositionTable("transposition_table.ser");
-                bestMove = negamax(boardScreen, board, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE, 1, botLogic);
-            }
-        }else{
-            loadTranspositionTable("transposition_table.ser");
-            bestMove = negamax(boardScreen, board, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE, 1, botLogic);
-        }
-        System.out.println("best move " + bestMove.startRow + " " + bestMove.startCol + " to " + bestMove.endRow + " " + bestMove.endCol + " " + bestMove.evaluation);
 
         if (bestMove != null) {
-            // Execute the move
-            if (bestMove.isAttackMove) {
-                boardScreen.botAttackStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            } else {
-                boardScreen.botMoveStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            }
-        }else{
-            boardScreen.cantMove(this.isBlack);
+            System.out.println("best move " + bestMove.startRow + " " + bestMove.startCol + " to " + bestMove.endRow + " " + bestMove.endCol + " " + bestMove.evaluation + " pv " + pv);
         }
-        saveTranspositionTable("transposition_table.ser");
+        return bestMove;
     }
-    private Move negamax(BoardScreen boardScreen, int[][] board, int depth, int alpha, int beta, int max, BotLogic botLogic) {
-        if (zobristTransposition.isInTranspositionTable() && zobristTransposition.getEntryFromTranspositionTable().getDepth() >= depth) { //
-            TranspositionEntry entry = zobristTransposition.getEntryFromTranspositionTable();
-            return new Move(entry.getStartRow(), entry.getStartCol(), entry.getEndRow(), entry.getEndCol(), entry.isAttack(), entry.getEvaluation());
+    // Returns the score for the side to move, the best line is left in pv.
+    // Entries are stored for the node itself with a bound, since null windows only give bounds.
+    private int negamax(FiancoPosition pos, int depth, int alpha, int beta, int max, BotLogic botLogic) {
+        int ply = rootDepth - depth;
+        pv.clear(ply);
+        long entry = zobristTransposition.probe(zobristTransposition.getZobristHash());
+        if (entry != TranspositionTable.MISS && TranspositionTable.depth(entry) >= depth) {
+            int evaluation = TranspositionTable.score(entry);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                || (bound == TranspositionTable.LOWER_BOUND && evaluation >= beta)
+                || (bound == TranspositionTable.UPPER_BOUND && evaluation <= alpha)) {
+                pv.set(ply, TranspositionTable.move(entry));
+                return evaluation;
+            }
         }
-        if (depth == 0 || botLogic.isGameOver(board,boardScreen,max)) {
+        if (depth == 0 || botLogic.isGameOver(pos, max)) {
             int evaluation;
             if((botLogic.didBlackWin() && isBlack) || (botLogic.didWhiteWin() && !isBlack)){
                 evaluation = 10000;
@@ -65,76 +72,115 @@ public class NegaMaxBotTT extends Bot {
                 evaluation = -10000;
             }
             else {
-                evaluation = botLogic.evaluateBoard(board); // Evaluate the board at the leaf node
+                evaluation = botLogic.evaluateBoard(pos); // Evaluate the board at the leaf node
             }
             botLogic.setWinsToFalse();
 
-            return new Move(-1,-1,-1,-1,false,max * evaluation); // Return the evaluation wrapped in a Move object
+            return max * evaluation;
         }
 
-        List<Move> moves = botLogic.getAllPossibleMoves(board,boardScreen, max == 1); // Color == 1 for current player, -1 for opponent
-        moves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
-
-        if (moves.get(0).isAttackMove) {
-            moves.removeIf(move -> !move.isAttackMove);
+        boolean black = (max == 1) == isBlack;
+        int alphaOrig = alpha;
+        int maxEval = Integer.MIN_VALUE;
+        int bestMove = 0;
+
+        // The move stored for this position is searched before the others are generated, when it
+        // cuts off they never are
+        int hashMove = entry != TranspositionTable.MISS ? TranspositionTable.move(entry) : 0;
+        if (hashMove != 0 && pos.isLegal(hashMove, black) && !suicideMove(pos, Move.to(hashMove) / 9, Move.to(hashMove) % 9, max)) {
+            maxEval = searchMove(pos, hashMove, depth, alpha, beta, max, botLogic, true);
+            bestMove = hashMove;
+            pv.update(ply, hashMove);
+            alpha = Math.max(alpha, maxEval);
+            if (alpha >= beta) {
+                ordering.cutoff(hashMove, ply, depth, black);
+            }
+        } else {
+            hashMove = 0;
         }
 
-        Move bestMove = null;
-        int maxEval = Integer.MIN_VALUE;
+        if (alpha < beta) {
+            MoveList moves = moveLists[depth]; // one list per remaining depth, reused by every node at that depth
+            botLogic.getAllPossibleMoves(pos, max == 1, moves); // Color == 1 for current player, -1 for opponent
+            ordering.order(moves, ply, black);
+
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                if (move == hashMove || suicideMove(pos, Move.to(move) / 9, Move.to(move) % 9, max)) // already searched, suicide moves
+                    continue;
+                int score = searchMove(pos, move, depth, alpha, beta, max, botLogic, maxEval == Integer.MIN_VALUE);
+                if (score > maxEval) {
+                    maxEval = score;
+                    bestMove = move;
+                    pv.update(ply, move);
+                }
+
+                alpha = Math.max(alpha, maxEval);
+                if (alpha >= beta) {
+                    ordering.cutoff(move, ply, depth, black);
+                    break; // Beta cut-off, no need to explore further if a winning move is found
+                }
+            }
 
-        for (Move move : moves) {
-            if(suicideMove(board,move.endRow,move.endCol, max)) // suicide moves
-                continue;
-            botLogic.makeMove(board, move, isBlack && max == 1 || !isBlack && max == -1); // if true move is black, else white
-            if(move.isAttackMove)
-                zobristTransposition.updateZobristHashForAttack(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
-            else
-                zobristTransposition.updateZobristHash(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
-
-            Move resultMove = negamax(boardScreen, board, depth - 1, -beta, -alpha, -max, botLogic); // Negate alpha, beta, and color
-            zobristTransposition.storeEntryInTranspositionTable(-resultMove.evaluation, move.isAttackMove, move.startRow, move.startCol, move.endRow, move.endCol, depth, flag);
-            if (-resultMove.evaluation > maxEval) {
-                maxEval = -resultMove.evaluation;
-                bestMove = move.clone();
-                bestMove.evaluation = maxEval;
+            if (maxEval == Integer.MIN_VALUE) {
+                pv.set(ply, moves.get(0)); // Fallback in case no best move was found
+                return 0;
             }
+        }
 
-            // Undo the move
-            botLogic.undoMove(board, move, isBlack && max == 1 || !isBlack && max == -1);
+        int flag = maxEval <= alphaOrig ? TranspositionTable.UPPER_BOUND
+            : maxEval >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+        zobristTransposition.store(zobristTransposition.getZobristHash(), maxEval, bestMove, depth, flag);
+        return maxEval;
+    }
 
-            if(move.isAttackMove)
-                zobristTransposition.updateZobristHashForAttack(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
-            else
-                zobristTransposition.updateZobristHash(move.startRow, move.startCol, move.endRow, move.endCol,board[move.endRow][move.endCol]);
+    // Plays the move, searches it and takes it back, the score is for the side to move before the move
+    private int searchMove(FiancoPosition pos, int move, int depth, int alpha, int beta, int max, BotLogic botLogic, boolean first) {
+        int startRow = Move.from(move) / 9, startCol = Move.from(move) % 9;
+        int endRow = Move.to(move) / 9, endCol = Move.to(move) % 9;
+        botLogic.makeMove(pos, move);
+        long parentHash = zobristTransposition.getZobristHash();
+        if(Move.isAttack(move))
+            zobristTransposition.updateZobristHashForAttack(startRow, startCol, endRow, endCol,pos.pieceAt(endRow, endCol));
+        else
+            zobristTransposition.updateZobristHash(startRow, startCol, endRow, endCol,pos.pieceAt(endRow, endCol));
+
+        int score = search(pos, depth - 1, alpha, beta, max, botLogic, first);
+
+        // Undo the move, the hash is restored since the moved stone is no longer on the end square
+        botLogic.undoMove(pos, move);
+        zobristTransposition.setZobristHash(parentHash);
+        return score;
+    }
 
-            alpha = Math.max(alpha, maxEval);
-            if (alpha >= beta) {
-                break; // Beta cut-off, no need to explore further if a winning move is found
-            }
+    // PVS: the first move gets the full window, the others a null window that only tells whether they
+    // beat alpha, and they are searched again with the full window if they do
+    private int search(FiancoPosition pos, int depth, int alpha, int beta, int max, BotLogic botLogic, boolean first) {
+        if (!pvs || first) {
+            return -negamax(pos, depth, -beta, -alpha, -max, botLogic); // Negate alpha, beta, and color
         }
-
-        if (bestMove == null) {
-            bestMove = moves.get(0); // Fallback in case no best move was found
+        int score = -negamax(pos, depth, -alpha - 1, -alpha, -max, botLogic);
+        if (score > alpha && score < beta) {
+            score = -negamax(pos, depth, -beta, -alpha, -max, botLogic);
         }
-
-        return bestMove;
+        return score;
     }
-    public boolean suicideMove(int [][]board, int row, int col, int max){
-        if(row!=0 && row!=board.length-1 && col!=0 && col!=board.length-1)
+    public boolean suicideMove(FiancoPosition pos, int row, int col, int max){
+        if(row!=0 && row!=FiancoPosition.SIZE-1 && col!=0 && col!=FiancoPosition.SIZE-1)
             if((max==1 && isBlack) || (max==-1 && !isBlack)) // Bot black plays
-                if((board[row-1][col-1] == 1 && board[row+1][col+1] == 0) || (board[row-1][col+1] == 1 && board[row+1][col-1] == 0))
+                if((pos.pieceAt(row-1, col-1) == 1 && pos.pieceAt(row+1, col+1) == 0) || (pos.pieceAt(row-1, col+1) == 1 && pos.pieceAt(row+1, col-1) == 0))
                     return true;
                 else if((max==1 && !isBlack) || (max==-1 && isBlack)) // Bot white plays
-                    if((board[row+1][col-1] == 2 && board[row-1][col+1] == 0) || (board[row+1][col+1] == 2 && board[row-1][col-1] == 0))
+                    if((pos.pieceAt(row+1, col-1) == 2 && pos.pieceAt(row-1, col+1) == 0) || (pos.pieceAt(row+1, col+1) == 2 && pos.pieceAt(row-1, col-1) == 0))
                         return true;
         return false;
     }
-    public void saveTranspositionTable(String filename) {
-        zobristTransposition.saveTranspositionTable(filename);
+    // Map the transposition table file, one per bot and color since the evaluation depends on both
+    public void openTranspositionTable(String filename) {
+        zobristTransposition.openTranspositionTable(filename);
     }
-    // Load the transposition table from a file
-    public void loadTranspositionTable(String filename) {
-        zobristTransposition.loadTranspositionTable(filename);
+    private String tableFile() {
+        return "transposition_table_" + getClass().getSimpleName() + (isBlack ? "_black.tt" : "_white.tt");
     }
     public void changeSide(){
         isBlack = !isBlack;
@@ -5,119 +5,111 @@ import java.util.List;
 public class NegaMaxBotWindow extends Bot {
     private int depthLimit; // Depth limit for alpha-beta pruning
     private int delta;
+    private MoveList[] moveLists;
+    private PrincipalVariation pv;
+    private final MoveOrdering ordering; // killers and history, kept from move to move
 
     public NegaMaxBotWindow(boolean isBlack, int[][] board, int depthLimit, int delta) {
         super(isBlack, board);
         this.depthLimit = depthLimit; // Set the maximum depth for the search
+        this.ordering = new MoveOrdering(depthLimit);
         this.delta = delta;
     }
 
-    // Main method for the bot to make its move
-    public void calculate(BoardScreen boardScreen, int[][] board) {
+    // Main method for the bot to pick its move
+    public Move findMove(int[][] board) {
         BotLogic botLogic = new BotLogic(isBlack);
+        moveLists = MoveList.forPlies(depthLimit + 1);
+        pv = new PrincipalVariation(depthLimit);
+        ordering.newSearch();
+        FiancoPosition pos = new FiancoPosition(board);
         Move bestMove = null;
-        List<Move> moves = botLogic.getAllPossibleMoves(board, boardScreen, true);
-        moves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
+        List<Move> moves = botLogic.getAllPossibleMoves(pos, true); // captures are already forced
 
         if (moves.size() == 1) {
             bestMove = moves.get(0);
-        } else if (moves.get(0).isAttackMove) {
-            moves.removeIf(move -> !move.isAttackMove);
-            if (moves.size() == 1) {
-                bestMove = moves.get(0);
-            } else {
-                int guess = 0; // Initial guess for the aspiration window
-                bestMove = negamaxWithWindowing(boardScreen, board, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE, 1, botLogic, guess);
-            }
-        } else {
+        } else if (!moves.isEmpty()) {
             int guess = 0; // Initial guess for the aspiration window
-            bestMove = negamaxWithWindowing(boardScreen, board, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE, 1, botLogic, guess);
+            bestMove = pv.toMove(negamaxWithWindowing(pos, depthLimit, -Integer.MAX_VALUE, Integer.MAX_VALUE, 1, botLogic, guess));
         }
 
-        System.out.println("best move " + bestMove.startRow + " " + bestMove.startCol + " to " + bestMove.endRow + " " + bestMove.endCol + " " + bestMove.evaluation);
-
         if (bestMove != null) {
-            // Execute the move
-            if (bestMove.isAttackMove) {
-                boardScreen.botAttackStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            } else {
-                boardScreen.botMoveStone(bestMove.startRow, bestMove.startCol, bestMove.endRow, bestMove.endCol);
-            }
-        } else {
-            boardScreen.cantMove(this.isBlack);
+            System.out.println("best move " + bestMove.startRow + " " + bestMove.startCol + " to " + bestMove.endRow + " " + bestMove.endCol + " " + bestMove.evaluation + " pv " + pv);
         }
+        return bestMove;
     }
 
     // Negamax with aspiration windowing
-    private Move negamaxWithWindowing(BoardScreen boardScreen, int[][] board, int depth, int alpha, int beta, int max, BotLogic botLogic, int guess) {
+    private int negamaxWithWindowing(FiancoPosition pos, int depth, int alpha, int beta, int max, BotLogic botLogic, int guess) {
         // First search with a window around the guess
         int aspirationAlpha = guess - delta;
         int aspirationBeta = guess + delta;
 
-        Move bestMove = negamax(boardScreen, board, depth, aspirationAlpha, aspirationBeta, max, botLogic);
+        int score = negamax(pos, depth, aspirationAlpha, aspirationBeta, max, botLogic);
 
         // If the result is outside the window, perform a re-search with a wider window
-        if (bestMove.evaluation <= aspirationAlpha) {
+        if (score <= aspirationAlpha) {
             // Fail low - search again with a smaller window
-            bestMove = negamax(boardScreen, board, depth, Integer.MIN_VALUE, aspirationAlpha, max, botLogic);
-        } else if (bestMove.evaluation >= aspirationBeta) {
+            score = negamax(pos, depth, -Integer.MAX_VALUE, aspirationAlpha, max, botLogic);
+        } else if (score >= aspirationBeta) {
             // Fail high - search again with a larger window
-            bestMove = negamax(boardScreen, board, depth, aspirationBeta, Integer.MAX_VALUE, max, botLogic);
+            score = negamax(pos, depth, aspirationBeta, Integer.MAX_VALUE, max, botLogic);
         }
 
-        return bestMove;
+        return score;
     }
 
-    // The standard negamax function
-    private Move negamax(BoardScreen boardScreen, int[][] board, int depth, int alpha, int beta, int max, BotLogic botLogic) {
-        if (depth == 0 || botLogic.isGameOver(board, boardScreen, max)) {
+    // The standard negamax function, returns the score for the side to move and leaves the best line in pv
+    private int negamax(FiancoPosition pos, int depth, int alpha, int beta, int max, BotLogic botLogic) {
+        int ply = depthLimit - depth;
+        pv.clear(ply);
+        if (depth == 0 || botLogic.isGameOver(pos, max)) {
             int evaluation;
             if ((botLogic.didBlackWin() && isBlack) || (botLogic.didWhiteWin() && !isBlack)) {
                 evaluation = 10000;
             } else if ((botLogic.didBlackWin() && !isBlack) || (botLogic.didWhiteWin() && isBlack)) {
                 evaluation = -10000;
             } else {
-                evaluation = botLogic.evaluateBoard(board); // Evaluate the board at the leaf node
+                evaluation = botLogic.evaluateBoard(pos); // Evaluate the board at the leaf node
             }
             botLogic.setWinsToFalse();
 
-            return new Move(-1, -1, -1, -1, false, max * evaluation); // Return the evaluation wrapped in a Move object
+            return max * evaluation;
         }
 
-        List<Move> moves = botLogic.getAllPossibleMoves(board, boardScreen, max == 1); // Color == 1 for current player, -1 for opponent
-        moves.sort((Move m1, Move m2) -> Boolean.compare(m2.isAttackMove(), m1.isAttackMove()));
-
-        if (moves.get(0).isAttackMove) {
-            moves.removeIf(move -> !move.isAttackMove);
-        }
+        MoveList moves = moveLists[depth]; // one list per remaining depth, reused by every node at that depth
+        botLogic.getAllPossibleMoves(pos, max == 1, moves); // Color == 1 for current player, -1 for opponent
+        boolean black = (max == 1) == isBlack;
+        ordering.order(moves, ply, black);
 
-        Move bestMove = null;
         int maxEval = Integer.MIN_VALUE;
 
-        for (Move move : moves) {
-            botLogic.makeMove(board, move, isBlack && max == 1 || !isBlack && max == -1); // if true move is black, else white
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            botLogic.makeMove(pos, move);
 
-            Move resultMove = negamax(boardScreen, board, depth - 1, -beta, -alpha, -max, botLogic); // Negate alpha, beta, and color
-            if (-resultMove.evaluation > maxEval) {
-                maxEval = -resultMove.evaluation;
-                bestMove = move.clone();
-                bestMove.evaluation = maxEval;
+            int score = -negamax(pos, depth - 1, -beta, -alpha, -max, botLogic); // Negate alpha, beta, and color
+            if (score > maxEval) {
+                maxEval = score;
+                pv.update(ply, move);
             }
 
             // Undo the move
-            botLogic.undoMove(board, move, isBlack && max == 1 || !isBlack && max == -1);
+            botLogic.undoMove(pos, move);
 
             alpha = Math.max(alpha, maxEval);
             if (alpha >= beta) {
+                ordering.cutoff(move, ply, depth, black);
                 break; // Beta cut-off, no need to explore further if a winning move is found
             }
         }
 
-        if (bestMove == null) {
-            bestMove = moves.get(0); // Fallback in case no best move was found
+        if (maxEval == Integer.MIN_VALUE) {
+            pv.set(ply, moves.get(0)); // Fallback in case no best move was found
+            return 0;
         }
 
-        return bestMove;
+        return maxEval;
     }
 
     public void changeSide() {
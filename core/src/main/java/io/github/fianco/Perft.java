@@ -0,0 +1,188 @@
+package io.github.fianco;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaves of the legal move tree from the start position, to validate and benchmark
+ * the move generators. A position where a stone reached its goal row or a color lost its last
+ * stone is treated as having no moves.
+ *
+ * Usage: Perft [depth] [divide] [parallel] [rules] [check]
+ *   divide   prints the count below every root move
+ *   parallel splits the root moves over a fork-join pool
+ *   rules    uses the int[][] FiancoRules generator instead of the FiancoPosition bitboards
+ *   check    compares both generators with START_COUNTS up to the given depth
+ */
+public class Perft {
+    // Leaf counts from BoardScreen's start position, white to move, for depth 0, 1, 2, ...
+    static final long[] START_COUNTS = {
+        1L, 25L, 623L, 14_975L, 356_399L, 8_419_237L, 197_921_483L, 4_685_464_097L, 110_672_312_698L
+    };
+
+    private static final int MAX_DEPTH = 64;
+
+    private Perft() {
+    }
+
+    public static long perft(FiancoPosition pos, boolean black, int depth) {
+        return perft(pos, black, depth, MoveList.forPlies(depth + 1));
+    }
+
+    private static long perft(FiancoPosition pos, boolean black, int depth, MoveList[] moveLists) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (pos.blackOnGoalRow() || pos.whiteOnGoalRow() || pos.countWhite() == 0 || pos.countBlack() == 0) {
+            return 0;
+        }
+        MoveList moves = moveLists[depth];
+        pos.generateMoves(black, moves);
+        if (depth == 1) {
+            return moves.size(); // bulk count, no need to play the last ply
+        }
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            pos.makeMove(moves.get(i));
+            nodes += perft(pos, !black, depth - 1, moveLists);
+            pos.undoMove(moves.get(i));
+        }
+        return nodes;
+    }
+
+    public static long perft(int[][] board, boolean black, int depth) {
+        return perft(board, black, depth, MoveList.forPlies(depth + 1));
+    }
+
+    private static long perft(int[][] board, boolean black, int depth, MoveList[] moveLists) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (FiancoRules.getWinner(board, black) != FiancoRules.EMPTY) {
+            return 0; // a stuck side has no moves either
+        }
+        MoveList moves = moveLists[depth];
+        FiancoRules.generateMoves(board, black, moves);
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            FiancoRules.makeMove(board, moves.get(i));
+            nodes += perft(board, !black, depth - 1, moveLists);
+            FiancoRules.undoMove(board, moves.get(i));
+        }
+        return nodes;
+    }
+
+    // Leaf count below every root move, in generation order
+    public static long[] divide(int[][] board, boolean black, int depth, boolean useRules, boolean parallel) {
+        MoveList moves = new MoveList();
+        FiancoRules.generateMoves(board, black, moves);
+        List<RootTask> tasks = new ArrayList<>();
+        for (int i = 0; i < moves.size(); i++) {
+            tasks.add(new RootTask(board, black, moves.get(i), depth - 1, useRules));
+        }
+        long[] counts = new long[moves.size()];
+        if (parallel) {
+            ForkJoinPool.commonPool().invoke(new RecursiveTask<Void>() {
+                @Override
+                protected Void compute() {
+                    invokeAll(tasks);
+                    return null;
+                }
+            });
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = tasks.get(i).join();
+            }
+        } else {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = tasks.get(i).compute();
+            }
+        }
+        return counts;
+    }
+
+    // Searches one root move on its own copy of the board
+    private static class RootTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[][] board;
+        private final boolean black;
+        private final int depth;
+        private final boolean useRules;
+
+        RootTask(int[][] board, boolean black, int move, int depth, boolean useRules) {
+            this.board = FiancoRules.copyBoard(board);
+            FiancoRules.makeMove(this.board, move);
+            this.black = !black;
+            this.depth = depth;
+            this.useRules = useRules;
+        }
+
+        @Override
+        protected Long compute() {
+            return useRules ? perft(board, black, depth) : perft(new FiancoPosition(board), black, depth);
+        }
+    }
+
+    private static String moveName(int move) {
+        int from = Move.from(move), to = Move.to(move);
+        return "" + from / 9 + from % 9 + (Move.isAttack(move) ? "x" : "-") + to / 9 + to % 9;
+    }
+
+    public static void main(String[] args) {
+        int depth = 6;
+        boolean divide = false, parallel = false, useRules = false, check = false;
+        for (String arg : args) {
+            switch (arg) {
+                case "divide": divide = true; break;
+                case "parallel": parallel = true; break;
+                case "rules": useRules = true; break;
+                case "check": check = true; break;
+                default: depth = Integer.parseInt(arg);
+            }
+        }
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("depth must be between 1 and " + MAX_DEPTH);
+        }
+        int[][] board = FiancoRules.initialBoard();
+
+        if (check) {
+            boolean ok = true;
+            for (int d = 1; d <= depth; d++) {
+                long bitboard = perft(new FiancoPosition(board), false, d);
+                long rules = perft(board, false, d);
+                String expected = d < START_COUNTS.length ? String.valueOf(START_COUNTS[d]) : "?";
+                boolean match = bitboard == rules && (d >= START_COUNTS.length || bitboard == START_COUNTS[d]);
+                ok &= match;
+                System.out.println("depth " + d + " bitboard " + bitboard + " rules " + rules + " expected " + expected + (match ? "" : "  MISMATCH"));
+            }
+            System.out.println(ok ? "ok" : "FAILED");
+            if (!ok) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        long start = System.nanoTime();
+        long nodes = 0;
+        if (divide || parallel) {
+            long[] counts = divide(board, false, depth, useRules, parallel);
+            MoveList moves = new MoveList();
+            FiancoRules.generateMoves(board, false, moves);
+            for (int i = 0; i < counts.length; i++) {
+                if (divide) {
+                    System.out.println(moveName(moves.get(i)) + ": " + counts[i]);
+                }
+                nodes += counts[i];
+            }
+        } else {
+            nodes = useRules ? perft(board, false, depth) : perft(new FiancoPosition(board), false, depth);
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        System.out.println("perft " + depth + ": " + nodes + " nodes in " + millis + " ms, " + nodes * 1000 / millis + " nodes/s");
+    }
+}
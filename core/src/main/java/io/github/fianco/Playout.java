@@ -0,0 +1,56 @@
+package io.github.fianco;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random playouts for Monte Carlo searches. A game is played in place on a FiancoPosition and every
+ * move is drawn straight from the bitboards (FiancoPosition.randomMove), so nothing is allocated per
+ * move. The end of the game is checked from the move that was just played (goal row, last stone
+ * captured) and from a side without moves (stuck), which saves the full FiancoPosition.winner test on
+ * every ply.
+ *
+ * A guided playout always plays a move onto the goal row when there is one. The random numbers come
+ * from a thread-local SplittableRandom, so one Playout can be shared by all threads.
+ */
+public class Playout {
+    private static final ThreadLocal<SplittableRandom> RANDOM = ThreadLocal.withInitial(SplittableRandom::new);
+
+    private final boolean guided;
+
+    public Playout(boolean guided) {
+        this.guided = guided;
+    }
+
+    // Plays the game to the end on pos and returns the winner, FiancoRules.WHITE or FiancoRules.BLACK
+    public int play(FiancoPosition pos, boolean blackToMove) {
+        return play(pos, blackToMove, null);
+    }
+
+    // Same, and adds every move to played unless it is null
+    public int play(FiancoPosition pos, boolean blackToMove, AmafMoves played) {
+        int winner = pos.winner(blackToMove);
+        if (winner != FiancoRules.EMPTY) {
+            return winner;
+        }
+        SplittableRandom random = RANDOM.get();
+        while (true) {
+            int move = pos.randomMove(blackToMove, random, guided);
+            if (move < 0) {
+                return blackToMove ? FiancoRules.WHITE : FiancoRules.BLACK; // the side to move is stuck
+            }
+            pos.makeMove(move);
+            if (played != null) {
+                played.add(blackToMove, move);
+            }
+            if (reachesGoal(move, blackToMove) || (blackToMove ? pos.countWhite() : pos.countBlack()) == 0) {
+                return blackToMove ? FiancoRules.BLACK : FiancoRules.WHITE;
+            }
+            blackToMove = !blackToMove;
+        }
+    }
+
+    private static boolean reachesGoal(int move, boolean black) {
+        int row = Move.to(move) / FiancoPosition.SIZE;
+        return black ? row == 0 : row == FiancoPosition.SIZE - 1;
+    }
+}
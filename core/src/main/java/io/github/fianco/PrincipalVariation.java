@@ -0,0 +1,76 @@
+package io.github.fianco;
+
+/**
+ * Triangular table holding the best line found below every ply of a search, as packed moves.
+ * The line at ply 0 is the principal variation and its first move is the move to play.
+ */
+public class PrincipalVariation {
+    private final int[][] lines;
+    private final int[] lengths;
+
+    public PrincipalVariation(int maxPly) {
+        lines = new int[maxPly + 1][maxPly + 1];
+        lengths = new int[maxPly + 1];
+    }
+
+    // Called when a node is entered, a leaf keeps an empty line
+    public void clear(int ply) {
+        lengths[ply] = 0;
+    }
+
+    // The node at ply found a new best move: its line becomes the move followed by the child's line
+    public void update(int ply, int move) {
+        lines[ply][0] = move;
+        if (ply + 1 < lines.length) {
+            System.arraycopy(lines[ply + 1], 0, lines[ply], 1, lengths[ply + 1]);
+            lengths[ply] = lengths[ply + 1] + 1;
+        } else {
+            lengths[ply] = 1;
+        }
+    }
+
+    // A line of a single move, e.g. a move taken from the transposition table
+    public void set(int ply, int move) {
+        lines[ply][0] = move;
+        lengths[ply] = 1;
+    }
+
+    public boolean isEmpty() {
+        return lengths[0] == 0;
+    }
+
+    public int bestMove() {
+        return lines[0][0];
+    }
+
+    public int length() {
+        return lengths[0];
+    }
+
+    public int get(int index) {
+        return lines[0][index];
+    }
+
+    // Best move as a Move object carrying the score, or null if the root had no move
+    public Move toMove(int evaluation) {
+        if (isEmpty()) {
+            return null;
+        }
+        Move move = Move.unpack(bestMove());
+        move.evaluation = evaluation;
+        return move;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lengths[0]; i++) {
+            int from = Move.from(lines[0][i]), to = Move.to(lines[0][i]);
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(from / 9).append(from % 9).append(Move.isAttack(lines[0][i]) ? 'x' : '-').append(to / 9).append(to % 9);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.fianco;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed size transposition table of packed longs, indexed by the low bits of the Zobrist hash.
+ * Every bucket has a depth-preferred slot and an always-replace slot, and every slot is two longs:
+ * the hash XOR the data, then the data. A probe only accepts a slot whose two words XOR back to the
+ * hash, so a slot torn by two threads writing at once reads as a miss and no locking is needed.
+ *
+ * Data layout: bits 0-14 move (Move.pack), bits 16-23 depth, bits 24-25 bound, bit 26 set on every
+ * stored entry, bits 32-63 score.
+ *
+ * The table can live on the heap or in a file mapped into memory. The file starts with a header of
+ * HEADER_LONGS longs (magic, bucket bits, Zobrist key seed) followed by the slots, so a table written
+ * by one run is used as is by the next one as long as the size and the keys are the same.
+ */
+public class TranspositionTable {
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    public static final long MISS = 0L;
+
+    private static final long VALID = 1L << 26;
+    private static final int LONGS_PER_BUCKET = 4;
+
+    private static final long MAGIC = 0x4669616E636F5433L; // "FiancoT3", AlphaBetaBotTT and NegaMaxBotTT keys fixed
+    private static final int HEADER_LONGS = 4;
+
+    private final LongBuffer table; // absolute get/put only, so the threads never share a position
+    private final int bucketMask;
+
+    // The table holds 2^log2Buckets buckets of two entries, 32 bytes per bucket
+    public TranspositionTable(int log2Buckets) {
+        this(LongBuffer.wrap(new long[LONGS_PER_BUCKET << log2Buckets]), log2Buckets);
+    }
+
+    private TranspositionTable(LongBuffer table, int log2Buckets) {
+        this.table = table;
+        this.bucketMask = (1 << log2Buckets) - 1;
+    }
+
+    /**
+     * Maps the table file into memory, creating it if needed. Stores go straight to the file through
+     * the page cache, so nothing has to be saved. A file with another size or Zobrist key seed is cleared.
+     */
+    public static TranspositionTable mapped(Path file, int log2Buckets, long keySeed) throws IOException {
+        long slots = (long) LONGS_PER_BUCKET << log2Buckets;
+        MappedByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            bytes = channel.map(FileChannel.MapMode.READ_WRITE, 0, (HEADER_LONGS + slots) * Long.BYTES); // the mapping outlives the channel
+        }
+        LongBuffer longs = bytes.order(ByteOrder.nativeOrder()).asLongBuffer();
+        LongBuffer header = longs.duplicate();
+        header.limit(HEADER_LONGS);
+        TranspositionTable table = new TranspositionTable(longs.position(HEADER_LONGS).slice(), log2Buckets);
+        if (header.get(0) != MAGIC || header.get(1) != log2Buckets || header.get(2) != keySeed) {
+            table.clear();
+            header.put(1, log2Buckets).put(2, keySeed).put(0, MAGIC);
+        }
+        return table;
+    }
+
+    // Packed data stored for the hash, or MISS
+    public long probe(long hash) {
+        int index = ((int) hash & bucketMask) * LONGS_PER_BUCKET;
+        long data = table.get(index + 1);
+        if ((table.get(index) ^ data) == hash && data != MISS) {
+            return data;
+        }
+        data = table.get(index + 3);
+        if ((table.get(index + 2) ^ data) == hash && data != MISS) {
+            return data;
+        }
+        return MISS;
+    }
+
+    public void store(long hash, int score, int move, int depth, int bound) {
+        long data = ((long) score << 32) | VALID | ((long) bound << 24) | ((long) Math.min(depth, 255) << 16) | (move & 0x7FFF);
+        int index = ((int) hash & bucketMask) * LONGS_PER_BUCKET;
+        long old = table.get(index + 1);
+        // The first slot keeps the deepest entry, anything else goes to the second slot
+        if ((table.get(index) ^ old) == hash || depth >= depth(old)) {
+            table.put(index, hash ^ data);
+            table.put(index + 1, data);
+        } else {
+            table.put(index + 2, hash ^ data);
+            table.put(index + 3, data);
+        }
+    }
+
+    public static int score(long data) {
+        return (int) (data >> 32);
+    }
+
+    public static int move(long data) {
+        return (int) data & 0x7FFF;
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> 16) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> 24) & 0x3;
+    }
+
+    public void clear() {
+        for (int i = 0; i < table.capacity(); i++) {
+            table.put(i, MISS);
+        }
+    }
+}
@@ -1,17 +1,17 @@
 package io.github.fianco;
 
-import java.io.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Random;
 
-public class ZobristTransposition implements Serializable {
+public class ZobristTransposition {
 
-    private static final int MAX_ENTRIES = 500000; // number of elements * size of each element => 243 * 8 bytes = 1944 bytes
-    // 1gm ram / 1944 bytes = ~0,56 millions
+    private static final int TABLE_BITS = 19; // 2^19 buckets of two entries, 16 MB
+    private static final long ZOBRIST_SEED = 0x9E3779B97F4A7C15L; // fixed keys, so a saved table stays valid between runs
     private long[][][] zobristTable; // Zobrist hashing table
     private long zobristHash; // Current hash for the board
-    private Map<Long, TranspositionEntry> transpositionTable; // Transposition table with Zobrist hash as key
+    private TranspositionTable transpositionTable; // Transposition table indexed by Zobrist hash, shared by search threads
+    private String tableFile; // file the table is mapped from, null while it is on the heap
 
     private static final int BLACK_PIECE = 2;
     private static final int WHITE_PIECE = 1;
@@ -20,13 +20,13 @@ public class ZobristTransposition implements Serializable {
 
     public ZobristTransposition() {
         this.zobristTable = new long[9][9][3]; // 9x9 board, 3 states (empty, white, black)
-        this.transpositionTable = new HashMap<>();
+        this.transpositionTable = new TranspositionTable(TABLE_BITS);
         initializeZobristTable();
     }
 
-    // Method to initialize the Zobrist table with random values
+    // Method to initialize the Zobrist table with random values, the same ones in every run
     private void initializeZobristTable() {
-        Random random = new Random();
+        Random random = new Random(ZOBRIST_SEED);
         playerHash = random.nextLong();
         for (int row = 0; row < 9; row++) {
             for (int col = 0; col < 9; col++) {
@@ -35,36 +35,6 @@ public class ZobristTransposition implements Serializable {
             }
         }
     }
-    // Manually manage the size of the transposition table
-    private void ensureCapacity() {
-        if (transpositionTable.size() > MAX_ENTRIES) {
-            Long keyToRemove = null;
-            int minDepth = 50; // Initialize with the maximum possible integer value
-            int value;
-            int count = 0;
-
-            // Iterate through the transposition table to find the entry with the lowest depth
-            for (Map.Entry<Long, TranspositionEntry> entry : transpositionTable.entrySet()) {
-                TranspositionEntry transpositionEntry = entry.getValue();
-                value = transpositionEntry.getDepth();
-                count++;
-                if (value < minDepth) {
-                    minDepth = value;
-                    keyToRemove = entry.getKey(); // Store the key of the entry with the lowest depth
-                }
-                if(count>=10){
-                    break;
-                }
-            }
-
-            // Remove the entry with the lowest depth
-            if (keyToRemove != null) {
-                transpositionTable.remove(keyToRemove);
-            }
-        }
-    }
-
-
     // Method to compute the initial Zobrist hash of the board
     public long computeZobristHash(int[][] board) {
         long hash = 0L;
@@ -83,24 +53,33 @@ public class ZobristTransposition implements Serializable {
 
     // Update the Zobrist hash when a move is made
     public void updateZobristHash(int startRow, int startCol, int endRow, int endCol, int piece) {
+        zobristHash = hashAfterMove(zobristHash, startRow, startCol, endRow, endCol, piece);
+    }
+    public void updateZobristHashForAttack(int startRow, int startCol, int endRow, int endCol, int attackingPiece) {
+        zobristHash = hashAfterAttack(zobristHash, startRow, startCol, endRow, endCol, attackingPiece);
+    }
+
+    // Hash after a quiet move, for searches that keep their own hash (one per thread).
+    // Applying the same move again gives the old hash back.
+    public long hashAfterMove(long hash, int startRow, int startCol, int endRow, int endCol, int piece) {
         // XOR out the old piece at the start position
-        zobristHash ^= zobristTable[startRow][startCol][piece];
+        hash ^= zobristTable[startRow][startCol][piece];
         // XOR in the new piece at the end position
-        zobristHash ^= zobristTable[endRow][endCol][piece];
-        zobristHash ^= playerHash; // switch who is playing
+        hash ^= zobristTable[endRow][endCol][piece];
+        return hash ^ playerHash; // switch who is playing
     }
-    public void updateZobristHashForAttack(int startRow, int startCol, int endRow, int endCol, int attackingPiece) {
+    public long hashAfterAttack(long hash, int startRow, int startCol, int endRow, int endCol, int attackingPiece) {
         // Regular move: XOR out the attacking piece from its start position
-        zobristHash ^= zobristTable[startRow][startCol][attackingPiece];
+        hash ^= zobristTable[startRow][startCol][attackingPiece];
         // XOR in the attacking piece at the end position
-        zobristHash ^= zobristTable[endRow][endCol][attackingPiece];
+        hash ^= zobristTable[endRow][endCol][attackingPiece];
 
         // Captured piece: XOR out the captured piece from the board
         int capturedRow = (startRow + endRow) / 2; // Midpoint between start and end for checkers attack
         int capturedCol = (startCol + endCol) / 2;
 
-        zobristHash ^= zobristTable[capturedRow][capturedCol][attackingPiece==WHITE_PIECE?2:1];
-        zobristHash ^= playerHash; // switch who is playing
+        hash ^= zobristTable[capturedRow][capturedCol][attackingPiece==WHITE_PIECE?2:1];
+        return hash ^ playerHash; // switch who is playing
     }
 
     // Get the current Zobrist hash
@@ -108,59 +87,38 @@ public class ZobristTransposition implements Serializable {
         return zobristHash;
     }
 
-    // Check if the current board state is already in the transposition table
-    public boolean isInTranspositionTable() {
-        return transpositionTable.containsKey(zobristHash);
+    // Go back to a hash saved with getZobristHash, after the move is taken back
+    public void setZobristHash(long hash) {
+        zobristHash = hash;
     }
 
-    // Get the TranspositionEntry (which includes evaluation and move information) from the table
-    public TranspositionEntry getEntryFromTranspositionTable() {
-        return transpositionTable.get(zobristHash);
+    // Packed entry for the hash or TranspositionTable.MISS, safe to call from several threads
+    public long probe(long hash) {
+        return transpositionTable.probe(hash);
     }
 
-    // Store the evaluation and move in the transposition table
-    public void storeEntryInTranspositionTable(int evaluation, boolean isAttack, int startRow, int startCol, int endRow, int endCol, int depth, int flag) {
-        TranspositionEntry entry = new TranspositionEntry(evaluation, isAttack, startRow, startCol, endRow, endCol, depth, flag);
-        ensureCapacity(); // Ensure we don't exceed the limit
-        //System.out.println(transpositionTable.size());
-        transpositionTable.put(zobristHash, entry);
+    // Store the evaluation, best move (Move.pack), depth and bound of the position with this hash
+    public void store(long hash, int evaluation, int move, int depth, int flag) {
+        transpositionTable.store(hash, evaluation, move, depth, flag);
     }
 
-    // Method to reset or clear the transposition table (if needed)
+    // Method to reset or clear the transposition table (if needed), a mapped table is cleared on disk too
     public void resetTranspositionTable() {
-        // Check if the file "transposition_table.ser" exists
-        File file = new File("transposition_table.ser");
-        if (file.exists()) {
-            // Delete the file if it exists
-            if (file.delete()) {
-                System.out.println("Transposition table file deleted successfully.");
-            } else {
-                System.err.println("Failed to delete transposition table file.");
-            }
-        }
-
-        // Clear the transposition table
         transpositionTable.clear();
     }
 
-    // Save the transposition table to a file
-    public void saveTranspositionTable(String filename) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
-            oos.writeObject(transpositionTable);
-            System.out.println("Transposition table saved successfully.");
-        } catch (IOException e) {
-            System.err.println("Error saving transposition table: " + e.getMessage());
+    // Keep the transposition table in a memory mapped file, so it carries over to the next move and the next run.
+    // Nothing happens if the file is already the one in use; if it cannot be mapped the current table is kept.
+    public void openTranspositionTable(String filename) {
+        if (filename.equals(tableFile)) {
+            return;
         }
-    }
-
-    // Load the transposition table from a file
-    @SuppressWarnings("unchecked")
-    public void loadTranspositionTable(String filename) {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
-            transpositionTable = (Map<Long, TranspositionEntry>) ois.readObject();
-            System.out.println("Transposition table loaded successfully.");
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Error loading transposition table: " + e.getMessage());
+        try {
+            transpositionTable = TranspositionTable.mapped(Paths.get(filename), TABLE_BITS, ZOBRIST_SEED);
+            tableFile = filename;
+            System.out.println("Transposition table mapped from " + filename);
+        } catch (IOException e) {
+            System.err.println("Error mapping transposition table: " + e.getMessage());
         }
     }
 }